@@ -10,9 +10,6 @@ import android.view.View;
 import com.gabrielcoman.simplexmediaplayer.Simplex;
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
 
-import tv.superawesome.lib.sanetwork.file.SAFileDownloader;
-import tv.superawesome.lib.sanetwork.file.SAFileDownloaderInterface;
-
 public class MainActivity extends Activity {
 
     private static final String myPlayerTag = "Taggy";
@@ -100,11 +97,6 @@ public class MainActivity extends Activity {
     }
 
     public void playMedia2 (View view) {
-        SAFileDownloader.getInstance().downloadFileFrom(MainActivity.this, url2, new SAFileDownloaderInterface() {
-            @Override
-            public void saDidDownloadFile(boolean b, String s) {
-                myPlayer.setMedia(s);
-            }
-        });
+        myPlayer.downloadMedia(url2);
     }
 }
@@ -0,0 +1,116 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test that checks the steady-state tick of the player allocates nothing: a
+ * laid out controller is rendered over many ticks, with the playback, buffer & time moving
+ * on every one of them, as they do when the ticker runs once per pixel of the progress bar,
+ * and the allocations of the main thread are counted while it does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SimplexControllerAllocationTest {
+
+    // the length of the video, short of an hour, so the time format doesn't change
+    private static final long   TOTAL_TIME      = 10 * 60 * 1000;
+
+    // number of ticks to warm up with & to count allocations over
+    private static final int    WARMUP_TICKS    = 200;
+    private static final int    MEASURED_TICKS  = 5000;
+
+    @Test
+    public void testControllerTickAllocatesNothing () {
+        int[] result = countAllocations(false);
+        assertTrue(result[0] > 0);
+        assertEquals("objects allocated by " + MEASURED_TICKS + " ticks", 0, result[1]);
+    }
+
+    @Test
+    public void testFlatControllerTickAllocatesNothing () {
+        int[] result = countAllocations(true);
+        assertTrue(result[0] > 0);
+        assertEquals("objects allocated by " + MEASURED_TICKS + " ticks", 0, result[1]);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that creates a controller, lays it out & draws it once, the way the player does,
+     * and then counts the objects the main thread allocates while rendering ticks on it
+     *
+     * @param isFlat    true for the SimplexFlatController, false for the SimplexController
+     * @return          the width of the progress bar, in pixels, & the number of objects
+     *                  allocated
+     */
+    private static int[] countAllocations (final boolean isFlat) {
+
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final int[] result = new int[2];
+
+        // the controllers are only ever rendered on the main thread
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int width = context.getResources().getDisplayMetrics().widthPixels;
+                int height = width * 9 / 16;
+
+                SimplexControls controller = isFlat ? new SimplexFlatController(context) : new SimplexController(context);
+                View view = controller.getView();
+                view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+                view.layout(0, 0, width, height);
+                view.draw(new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)));
+
+                int trackWidth = controller.getPlaybackWidth();
+                result[0] = trackWidth;
+                if (trackWidth <= 0) return;
+
+                tick(controller, trackWidth, 0, WARMUP_TICKS);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                tick(controller, trackWidth, WARMUP_TICKS, MEASURED_TICKS);
+                Debug.stopAllocCounting();
+                result[1] = Debug.getThreadAllocCount();
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Method that renders a number of ticks, each a pixel of the progress bar after the last,
+     * with the buffer a bit ahead of the playback
+     *
+     * @param controller    the controller
+     * @param trackWidth    the width of the progress bar, in pixels
+     * @param from          the first tick
+     * @param ticks         the number of ticks
+     */
+    private static void tick (SimplexControls controller, int trackWidth, int from, int ticks) {
+        for (int i = from; i < from + ticks; i++) {
+            int pixel = i % trackWidth;
+            float playback = pixel / (float) trackWidth;
+            float buffer = Math.min(1, (pixel + 10) / (float) trackWidth);
+            controller.render(Simplex.PlaybackState.PLAYING, playback, buffer,
+                    (long) (playback * TOTAL_TIME), TOTAL_TIME);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark that compares the two controllers a player can display: the default
+ * SimplexController, built out of subviews, and the SimplexFlatController, that draws
+ * everything in a single view. For each of them, it times creating it, measuring & laying
+ * it out, and drawing it, at the size of a full width 16:9 player. It logs the results; it
+ * doesn't fail if either is slow.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SimplexControllerBenchmark {
+
+    // log tag of the results
+    private static final String TAG             = "SimplexBenchmark";
+
+    // number of controllers to warm up with & to measure
+    private static final int    WARMUP_RUNS     = 20;
+    private static final int    MEASURED_RUNS   = 100;
+
+    @Test
+    public void benchmarkControllers () {
+
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final int width = context.getResources().getDisplayMetrics().widthPixels;
+        final int height = width * 9 / 16;
+        final long[] tree = new long[3];
+        final long[] flat = new long[3];
+
+        // views are created & drawn on the main thread, as in the player
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Canvas canvas = new Canvas(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    runController(context, false, canvas, width, height, new long[3]);
+                    runController(context, true, canvas, width, height, new long[3]);
+                }
+
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    runController(context, false, canvas, width, height, tree);
+                    runController(context, true, canvas, width, height, flat);
+                }
+            }
+        });
+
+        log("SimplexController", tree);
+        log("SimplexFlatController", flat);
+
+        assertTrue(tree[0] > 0 && flat[0] > 0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that creates a controller, lays it out & draws it, the way the player does
+     *
+     * @param context   the context
+     * @param isFlat    true for the SimplexFlatController, false for the SimplexController
+     * @param canvas    the canvas to draw on
+     * @param width     the width of the controller
+     * @param height    the height of the controller
+     * @param times     the times (in ns) to add the time of each phase to: creating it,
+     *                  measuring & laying it out, and drawing it
+     */
+    private static void runController (Context context, boolean isFlat, Canvas canvas, int width, int height, long[] times) {
+
+        long start = System.nanoTime();
+        SimplexControls controller = isFlat ? new SimplexFlatController(context) : new SimplexController(context);
+        controller.render(Simplex.PlaybackState.PLAYING, 0.25F, 0.5F, 65000, 600000);
+        View view = controller.getView();
+
+        long created = System.nanoTime();
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+
+        long laidOut = System.nanoTime();
+        view.draw(canvas);
+
+        long drawn = System.nanoTime();
+        times[0] += created - start;
+        times[1] += laidOut - created;
+        times[2] += drawn - laidOut;
+    }
+
+    /**
+     * Method that logs the average times of a controller
+     *
+     * @param name  the name of the controller
+     * @param times the total time (in ns) of each phase
+     */
+    private static void log (String name, long[] times) {
+        Log.i(TAG, String.format("%s: create %.3f ms, measure & layout %.3f ms, draw %.3f ms",
+                name, times[0] / 1e6 / MEASURED_RUNS, times[1] / 1e6 / MEASURED_RUNS, times[2] / 1e6 / MEASURED_RUNS));
+    }
+}
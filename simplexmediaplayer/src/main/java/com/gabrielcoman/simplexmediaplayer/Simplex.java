@@ -6,7 +6,11 @@ package com.gabrielcoman.simplexmediaplayer;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.graphics.Color;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -18,12 +22,24 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.RelativeLayout;
 
+import com.gabrielcoman.simplexmediaplayer.aux.cache.SimplexCacheProxy;
+import com.gabrielcoman.simplexmediaplayer.aux.cache.SimplexMediaCache;
+import com.gabrielcoman.simplexmediaplayer.aux.cache.SimplexPrefetchScheduler;
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexBitmapCache;
+import com.gabrielcoman.simplexmediaplayer.aux.media.SimplexKeyframeIndex;
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexBandwidthEstimator;
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexDownloader;
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexNetworkAux;
+import com.gabrielcoman.simplexmediaplayer.aux.media.SimplexMp4Parser;
+import com.gabrielcoman.simplexmediaplayer.aux.media.SimplexRendition;
+import com.gabrielcoman.simplexmediaplayer.aux.media.SimplexSource;
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
-import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTime;
 import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTimeAux;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class that represents the main Simplex Video Player
@@ -32,7 +48,7 @@ public class Simplex extends Fragment implements
         SimplexHolder.Listener,
         SimplexVideoView.Listener,
         SimplexMediaPlayer.Listener,
-        SimplexController.Listener
+        SimplexControls.Listener
 {
 
     // the main subviews of the simplex player:
@@ -43,25 +59,96 @@ public class Simplex extends Fragment implements
     private SimplexHolder       videoHolder         = null;
     private SimplexVideoView    videoView           = null;
     private SimplexMediaPlayer  mediaPlayer         = null;
-    private SimplexController   controller          = null;
-
-    // two handlers to check on video progress and
-    // whether the media should be played or not
-    private Handler             progressHandler     = null;
-    private Handler             mediaHandler        = null;
+    private SimplexControls     controller          = null;
+
+    // a second media player that prepares the next playlist item in the background, and
+    // whether it's been chained to the current one through "setNextMediaPlayer"
+    private SimplexMediaPlayer  nextPlayer          = null;
+    private boolean             isNextChained       = false;
+
+    // ticker that updates the controller & listener with the video progress, whether the
+    // fragment is started (i.e. visible) & whether the user is dragging the seek bar
+    private SimplexTicker       ticker              = null;
+    private boolean             isStarted           = false;
+    private boolean             isScrubbing         = false;
+
+    // the latest media requested through "setMedia" while the video surface wasn't yet
+    // created; it will get prepared as soon as the surface exists
+    private SimplexSource       pendingMedia        = null;
+
+    // whether a closed media player is still being released in the background; no new media
+    // player is created for the surface until it's done
+    private boolean             isReleasing         = false;
+
+    // the current playlist and the index of the item that's currently playing
+    private List<SimplexSource> playlist            = new ArrayList<>();
+    private int                 playlistIndex       = -1;
+
+    // the source being played, the rendition of it that's been selected (and the size of the
+    // holder it's been selected for), and the rendition the next player is preparing
+    private SimplexSource       currentSource       = null;
+    private String              currentRendition    = null;
+    private int                 renditionWidth      = 0;
+    private int                 renditionHeight     = 0;
+    private String              nextRendition       = null;
 
     // state vars keeping track of whether this is the
     // first time the player is being called
     private boolean             isFirstTime         = true;
 
     // local instance of a style that the users could interact with
-    private SimplexStyle        style               = new SimplexStyle();
+    private SimplexStyle        style               = SimplexStyle.defaultStyle();
 
     // var holding whether the controller is visible
     private boolean             isControllerVisible = true;
 
-    // private listener
+    // var holding whether the controller should be the flat one, drawn by a single view,
+    // instead of the default one, built out of subviews
+    private boolean             shouldUseFlatController = false;
+
+    // var holding whether the prepared media player should be kept alive when the video
+    // surface gets destroyed, instead of being stopped and prepared again
+    private boolean             shouldRetainDecoder = false;
+
+    // var holding whether user seeks should snap to the nearest key frame, the key frame
+    // index of the current media (if known) and a counter to tell apart index loads
+    private boolean             shouldSnapToKeyframes = false;
+    private SimplexKeyframeIndex keyframeIndex      = null;
+    private int                 keyframeRequest     = 0;
+
+    // var holding whether remote media should be played through the cache proxy & the size
+    // bound of the cache
+    private boolean             shouldCacheMedia    = false;
+    private long                cacheSize           = SimplexMediaCache.DEFAULT_MAX_SIZE;
+
+    // how far ahead of the playhead (in ms of media) remote media get downloaded, how far
+    // ahead downloading resumes, and the cache key of the current media, if it's downloaded
+    // through the cache proxy
+    private long                prefetchWindow      = SimplexPrefetchScheduler.DEFAULT_WINDOW;
+    private long                prefetchLowWater    = SimplexPrefetchScheduler.DEFAULT_LOW_WATER;
+    private String              prefetchKey         = null;
+
+    // var holding whether downloaded media should be played while they're downloading, and
+    // the download of the media that's played (or that should be, once it's on disk)
+    private boolean             shouldPlayWhileDownloading = false;
+    private SimplexDownloader   downloader          = null;
+
+    // the cache proxy & the bandwidth estimator, shared by all players in the process
+    private static SimplexCacheProxy cacheProxy     = null;
+    private static SimplexBandwidthEstimator bandwidthEstimator = null;
+
+    // one second, in ms
+    private static final long   SECOND              = 1000;
+
+    // how much the area of the holder has to grow or shrink for the rendition to be reselected
+    private static final int    MAJOR_RESIZE_FACTOR = 2;
+
+    // time (in ms) after which a media that hasn't finished preparing is considered an error
+    private long                prepareTimeout      = SimplexMediaPlayer.DEFAULT_PREPARE_TIMEOUT;
+
+    // private listener, & the optional one for bandwidth estimates
     private Listener            listener;
+    private BandwidthListener   bandwidthListener;
 
     // private enum holding the internal simplified state of the player
     enum PlaybackState {
@@ -90,6 +177,8 @@ public class Simplex extends Fragment implements
             @Override public void didClose () {}
             @Override public void didUpdateBuffer (float percent) {}
             @Override public void didUpdatePlayback (int hour, int minute, int second) {}};
+        bandwidthListener = new BandwidthListener() {
+            @Override public void didUpdateBandwidth (long bitrate) {}};
     }
 
     /**
@@ -106,85 +195,49 @@ public class Simplex extends Fragment implements
         // retain the instance between screen transitions
         setRetainInstance(true);
 
-        // start a progress handler the runs every 250ms to ensure all the UI elements have
-        // been properly updated
-        progressHandler = new Handler(Looper.getMainLooper());
-        progressHandler.postDelayed(new Runnable() {
+        // create the ticker that updates the progress of the video; it only runs while the
+        // video is playing and visible, see "updateTicker"
+        ticker = new SimplexTicker(new SimplexTicker.Listener() {
             @Override
-            public void run() {
-
-                if (state == PlaybackState.REWIND) {
-                    try {
-                        controller.updatePlayback(1.0F);
-                        controller.updateButtonPlaybackForState (state);
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-                } else {
-
-                    int currentTime = 0;
-
-                    try {
-                        currentTime = mediaPlayer.getCurrentPosition();
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-
-                    int totalDuration = 0;
-
-                    try {
-                        totalDuration = mediaPlayer.getTotalDuration();
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-
-                    // get a version of the current time - either from the media player
-                    // or from a saved previous one
-                    float playbackPercent = 0;
-
-                    try {
-                        playbackPercent = currentTime / (float) totalDuration;
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-
-                    // and the buffer percent
-                    float bufferPercent = 0;
-
-                    try {
-                        bufferPercent = mediaPlayer.getBufferPercent();
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-
-                    // get time
-                    SimplexTime time = SimplexTimeAux.getTime(currentTime);
-                    SimplexTime totalTime = SimplexTimeAux.getTime(totalDuration);
+            public long didTick() {
+                return updateProgress();
+            }
+        });
+    }
 
-                    // call listener
-                    if (state == PlaybackState.PLAYING) {
-                        listener.didUpdateBuffer(bufferPercent);
-                        listener.didUpdatePlayback(time.getHour(), time.getMinute(), time.getSecond());
-                    }
+    /**
+     * Overridden Fragment method that gets called when the player becomes visible
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        isStarted = true;
+        updateTicker();
+    }
 
-                    // and finally update all the UI
-                    try {
-                        controller.updatePlayback(playbackPercent);
-                        controller.updateThumb(playbackPercent);
-                        controller.updateCurrentTime(time);
-                        controller.updateTotalTime(totalTime);
-                        controller.updateBuffer(bufferPercent);
-                        controller.updateButtonPlaybackForState (state);
-                    } catch (Exception e) {
-                        // do nothing
-                    }
-                }
+    /**
+     * Overridden Fragment method that gets called when the player is no longer visible
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        isStarted = false;
+        updateTicker();
+    }
 
-                if (progressHandler != null) {
-                    progressHandler.postDelayed(this, 150);
-                }
-            }
-        }, 150);
+    /**
+     * Overridden Fragment method that gets called when the system is running low on memory.
+     * The built-in controller bitmaps are let go of; the ones still shown stay alive through
+     * their views, the others get decoded again the next time they're needed.
+     *
+     * @param level the trim memory level
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            SimplexBitmapCache.trim();
+        }
     }
 
     /**
@@ -212,12 +265,16 @@ public class Simplex extends Fragment implements
             videoHolder.addView(videoView);
 
             // create & parametrise the controller
-            controller = new SimplexController(getActivity());
-            controller.setLayoutParams(new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+            if (shouldUseFlatController) {
+                controller = new SimplexFlatController(getActivity());
+            } else {
+                controller = new SimplexController(getActivity());
+            }
+            controller.getView().setLayoutParams(new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
             controller.setListener(this);
             controller.updateStyle(style);
-            controller.setVisibility(isControllerVisible ? View.VISIBLE : View.GONE);
-            videoHolder.addView(controller);
+            controller.getView().setVisibility(isControllerVisible ? View.VISIBLE : View.GONE);
+            videoHolder.addView(controller.getView());
 
         } else {
             if (container != null) {
@@ -241,15 +298,14 @@ public class Simplex extends Fragment implements
         // call to super
         super.onDestroy();
 
-        // remove the progress handler
-        if (progressHandler != null) {
-            progressHandler = null;
+        // stop the ticker
+        if (ticker != null) {
+            ticker.stop();
+            ticker = null;
         }
 
-        // remove the media handler
-        if (mediaHandler != null) {
-            mediaHandler = null;
-        }
+        // and forget any media that was still waiting for a surface
+        pendingMedia = null;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -265,21 +321,34 @@ public class Simplex extends Fragment implements
     @Override
     public void videoViewCreated(SurfaceHolder holder) {
 
+        // if there's a media waiting for the surface to be created, start preparing it now
+        if (pendingMedia != null && videoView != null) {
+            SimplexSource source = pendingMedia;
+            pendingMedia = null;
+            startMedia(source);
+            return;
+        }
+
         // if the media player is valid and not null
         if (mediaPlayer != null && videoView != null) {
 
             // set it's display as the new holder
             mediaPlayer.setDisplay(holder);
 
-            // and try to prepare it
-            try {
-                mediaPlayer.prepare();
-            } catch (Exception e) {
-                e.printStackTrace();
+            // and, if it got stopped when the previous surface was destroyed, start preparing
+            // it again; the rest will happen in "onPrepared"
+            if (mediaPlayer.isStopped()) {
+                try {
+                    mediaPlayer.prepareMediaAsync();
+                } catch (IllegalStateException e) {
+                    e.printStackTrace();
+                }
+            }
+            // if it's been retained, it's still prepared, so just carry on from where it
+            // was when the previous surface was destroyed
+            else if (mediaPlayer.isPrepared()) {
+                applyPlaybackState();
             }
-
-            // also set the video size for the video view
-            videoView.setVideoSize(mediaPlayer.getVideoWidth(), mediaPlayer.getVideoHeight());
 
             // and resize the video view to a certain container
             videoView.resizeToContainer(videoHolder.getMeasuredWidth(), videoHolder.getMeasuredHeight());
@@ -301,8 +370,19 @@ public class Simplex extends Fragment implements
         // only if the media player is not null
         if (mediaPlayer != null) {
 
-            // stop the media player
-            mediaPlayer.stop();
+            // in retained decoder mode, just pause (which also saves the current position),
+            // keeping the media player prepared for the next surface
+            if (shouldRetainDecoder && mediaPlayer.isPrepared()) {
+                mediaPlayer.pause();
+            }
+            // otherwise stop the media player
+            else {
+                mediaPlayer.stop();
+            }
+
+            // either way, the surface is gone once this returns, so wait until the player
+            // thread has paused or stopped and let go of it
+            mediaPlayer.detachDisplay();
 
         }
     }
@@ -321,6 +401,12 @@ public class Simplex extends Fragment implements
         if (mediaPlayer != null && videoView != null) {
             // resize the video view to fit the new container
             videoView.resizeToContainer(newWidth, newHeight);
+
+            // and use a rendition that better fits the new size, if there is one
+            switchRenditionIfNeeded(newWidth, newHeight);
+
+            // the progress bar has changed size too
+            updateTicker();
         }
     }
 
@@ -330,12 +416,37 @@ public class Simplex extends Fragment implements
 
     /**
      * Overridden SimplexMediaPlayer.Listener onPrepared method
+     * Here the video view gets resized to the media and the player is brought in line with
+     * the current playback state
+     */
+    @Override
+    public void onPrepared() {
+
+        // now that the media is known, update the video size and container
+        if (videoView != null && videoHolder != null) {
+            videoView.setVideoSize(mediaPlayer.getVideoWidth(), mediaPlayer.getVideoHeight());
+            videoView.resizeToContainer(videoHolder.getMeasuredWidth(), videoHolder.getMeasuredHeight());
+        }
+
+        // apply the current state
+        applyPlaybackState();
+
+        // and show the duration of the new media, whatever the state
+        updateTicker();
+
+        // and start preparing the next playlist item in the background, if there is one,
+        // or chain it again if it's already prepared
+        prepareNextItem();
+        chainNextPlayer();
+    }
+
+    /**
+     * Internal method that brings a prepared media player in line with the current state.
      * Here, depending on the state of the video player, multiple things can happen
      * - either the video continues (or starts)
      * - or it just seeks to a position
      */
-    @Override
-    public void onPrepared() {
+    private void applyPlaybackState () {
 
         switch (state) {
 
@@ -361,7 +472,6 @@ public class Simplex extends Fragment implements
                 break;
             }
         }
-
     }
 
     /**
@@ -374,15 +484,22 @@ public class Simplex extends Fragment implements
         // call listener
         listener.didComplete();
 
+        // if there's another item in the playlist, advance to it instead of rewinding
+        if (hasNextItem()) {
+            advanceToNextItem(true);
+            return;
+        }
+
         // pause & save last position
         mediaPlayer.pause();
 
         // rewind
-        state = PlaybackState.REWIND;
+        setState(PlaybackState.REWIND);
     }
 
     /**
-     * Overridden SimplexMediaPlayer.Listener onError method
+     * Overridden SimplexMediaPlayer.Listener onError method. This also gets called when the
+     * media player could not prepare the media in the given prepare timeout.
      *
      */
     @Override
@@ -426,6 +543,29 @@ public class Simplex extends Fragment implements
         }
     }
 
+    /**
+     * Overridden SimplexController method that gets called while the user drags the seek bar.
+     * The media player scrubs to the position with fast, rate limited seeks; the precise seek
+     * happens once the user lets go, in "shouldAdvanceToPercent".
+     *
+     * @param percent percent to scrub to
+     */
+    @Override
+    public void shouldScrubToPercent(float percent) {
+
+        // update every frame while the user drags
+        if (!isScrubbing) {
+            isScrubbing = true;
+            updateTicker();
+        }
+
+        // only if we have a valid media player
+        if (mediaPlayer != null) {
+            mediaPlayer.scrubTo(snapToKeyframe((int) (percent * mediaPlayer.getTotalDuration())));
+            updatePrefetchPlayhead(mediaPlayer.getCurrentPosition(), mediaPlayer.getTotalDuration());
+        }
+    }
+
     /**
      * Overridden SimplexController method that gets called at the end of a user drag action
      * on the seek bar. This informs the video player that it should start playing from a
@@ -436,14 +576,19 @@ public class Simplex extends Fragment implements
     @Override
     public void shouldAdvanceToPercent(float percent) {
 
+        // the user is no longer dragging
+        isScrubbing = false;
+        updateTicker();
+
         // only if we have a valid media player
         if (mediaPlayer != null) {
 
             // position
-            int position = (int) (percent * mediaPlayer.getTotalDuration());
+            int position = snapToKeyframe((int) (percent * mediaPlayer.getTotalDuration()));
 
-            // play from resulting position
+            // play from resulting position, letting the prefetch scheduler know straight away
             play(position);
+            updatePrefetchPlayhead(position, mediaPlayer.getTotalDuration());
 
         }
 
@@ -457,29 +602,213 @@ public class Simplex extends Fragment implements
      * Main public method through which either an URL or a file name are set as sources for
      * the player. From here on, if it's prepared and it's set to auto-play, the player will
      * begin playing.
+     * Setting a single media replaces any playlist that might have been set before.
      *
      * @param mediaName URL or file name
      */
-    public void setMedia (final String mediaName) {
+    public void setMedia (String mediaName) {
+        setMedia(new SimplexSource(mediaName));
+    }
+
+    /**
+     * Public method through which a media available in several renditions is set as source
+     * for the player. The smallest rendition that covers the player (and that the estimated
+     * bandwidth allows for) is played, and the player switches to another one if it's resized
+     * a lot (e.g. when going full screen).
+     * Setting a single media replaces any playlist that might have been set before.
+     *
+     * @param source a media source with one or more renditions
+     */
+    public void setMedia (SimplexSource source) {
+
+        // clear the current playlist
+        playlist.clear();
+        playlistIndex = -1;
+        releaseNextPlayer();
+
+        // and queue the media
+        queueMedia(source);
+    }
+
+    /**
+     * Public method through which a list of URLs or file names are set as sources for the
+     * player. They will be played one after the other; while one item plays, the next one is
+     * prepared in the background by a second media player, so the transition between them
+     * does not need to re-prepare anything.
+     *
+     * @param mediaNames list of URLs or file names
+     */
+    public void setPlaylist (List<String> mediaNames) {
+
+        List<SimplexSource> sources = new ArrayList<>();
+        if (mediaNames != null) {
+            for (String mediaName : mediaNames) {
+                sources.add(new SimplexSource(mediaName));
+            }
+        }
+
+        setPlaylistSources(sources);
+    }
+
+    /**
+     * Public method through which a list of media sources, each available in one or more
+     * renditions, are set as sources for the player. The rendition of each item is selected
+     * when it starts being prepared, for the size the player has at that point.
+     *
+     * @param sources list of media sources
+     */
+    public void setPlaylistSources (List<SimplexSource> sources) {
+
+        // replace the current playlist
+        playlist.clear();
+        releaseNextPlayer();
+        if (sources != null) {
+            playlist.addAll(sources);
+        }
+
+        // and start with the first item
+        if (playlist.isEmpty()) {
+            playlistIndex = -1;
+        } else {
+            playlistIndex = 0;
+            queueMedia(playlist.get(playlistIndex));
+        }
+    }
+
+    /**
+     * Public method through which a remote media is downloaded to the app's files directory
+     * (over several parallel connections) and then set as source for the player, just like
+     * a file name passed to "setMedia". Downloads that got interrupted, even by the app being
+     * killed, resume from where they were left the next time the same url is downloaded, and
+     * media that are already on disk are played right away.
+     * If the player should play while downloading, it starts playing right away, from the
+     * same file the media is being downloaded to.
+     * If the download fails, the listener's "didError" method is called.
+     *
+     * @param url the remote media url
+     */
+    public void downloadMedia (String url) {
+
+        // get current activity or context
+        Activity context = getActivity();
+
+        // stop any previous download
+        stopDownload();
+
+        if (context == null || url == null) {
+            listener.didError();
+            return;
+        }
+
+        final String fileName = getDownloadFileName(url);
+        File file = new File(context.getFilesDir(), fileName);
+
+        if (file.exists()) {
+            setMedia(fileName);
+            return;
+        }
+
+        final SimplexDownloader download = new SimplexDownloader(url, file);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        download.setBandwidthEstimator(getBandwidthEstimator(context));
+
+        // serve the media to the player from the file it's being downloaded to
+        boolean isServed = false;
+        if (shouldPlayWhileDownloading) {
+            try {
+                SimplexCacheProxy proxy = getCacheProxy(context);
+                proxy.start();
+                proxy.addDownload(download);
+                isServed = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        final boolean isPlayingWhileDownloading = isServed;
 
-        // start a handler that will only fire the internal method if the
-        // video view is prepared
-        mediaHandler = new Handler(Looper.getMainLooper());
-        mediaHandler.postDelayed(new Runnable() {
+        download.setListener(new SimplexDownloader.Listener() {
             @Override
-            public void run() {
+            public void didDownload(File file) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // when playing while downloading, the player already has the media
+                        if (downloader != download || isPlayingWhileDownloading) return;
+                        downloader = null;
+                        setMedia(fileName);
+                    }
+                });
+            }
 
-                if (!videoView.isSurfaceCreated() && mediaHandler != null) {
-                    mediaHandler.postDelayed(this, 250);
-                } else {
-                    try {
-                        prepareMedia (mediaName);
-                    } catch (Throwable throwable) {
-                        throwable.printStackTrace();
+            @Override
+            public void didFail() {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (downloader != download) return;
+                        stopDownload();
+                        listener.didError();
                     }
-                }
+                });
             }
-        }, 250);
+        });
+
+        downloader = download;
+        download.start();
+
+        if (isPlayingWhileDownloading) {
+            setMedia(url);
+        }
+    }
+
+    /**
+     * Public method that skips to the next item in the playlist, if there is one
+     */
+    public void playNext () {
+        if (hasNextItem()) {
+            advanceToNextItem(false);
+        }
+    }
+
+    /**
+     * Internal method that queues a new media. If the video surface is not yet created,
+     * the media will be prepared as soon as the "videoViewCreated" callback fires.
+     * Only the latest queued media is kept.
+     *
+     * @param source media source
+     */
+    private void queueMedia (SimplexSource source) {
+
+        if (videoView != null && videoView.isSurfaceCreated()) {
+            pendingMedia = null;
+            startMedia(source);
+        } else {
+            pendingMedia = source;
+        }
+    }
+
+    /**
+     * Internal method that selects the rendition of a media source to play and prepares it,
+     * catching any error it might throw
+     *
+     * @param source media source
+     */
+    private void startMedia (SimplexSource source) {
+
+        // wait for the previous media player to be released before creating a new one
+        if (isReleasing && mediaPlayer == null) {
+            pendingMedia = source;
+            return;
+        }
+
+        currentSource = source;
+        currentRendition = selectRendition(source);
+
+        try {
+            prepareMedia (currentRendition);
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        }
     }
 
     /**
@@ -503,54 +832,587 @@ public class Simplex extends Fragment implements
             if (isFirstTime) {
                 isFirstTime = false;
             } else {
-                state = PlaybackState.PLAYING;
+                setState(PlaybackState.PLAYING);
             }
 
-            // create or reset the media player
+            // create or reset the media player; resetting also cancels any prepare
+            // that might still be in progress for the previous media
             if (mediaPlayer == null) {
                 mediaPlayer = new SimplexMediaPlayer();
                 mediaPlayer.setDisplay(videoView.getHolder());
                 mediaPlayer.setListener(this);
             } else {
                 mediaPlayer.reset();
+                mediaPlayer.setDisplay(videoView.getHolder());
             }
-
-            // determine what type of media Url we're talking about
-            String mediaUrl;
-
-            File file = new File(context.getFilesDir(), mediaName);
-            if (file.exists()) {
-                mediaUrl = file.toString();
-                mediaPlayer.setOfflineBuffer();
-            } else if (Patterns.WEB_URL.matcher(mediaName).matches()){
-                mediaUrl = mediaName;
-                mediaPlayer.setOnlineBuffer();
-            } else {
-                throw new Exception("Media inputted is neither a valid file on disk or a remote url!");
-            }
+            mediaPlayer.setPrepareTimeout(prepareTimeout);
 
             // try to set the data source
             try {
-                mediaPlayer.setDataSource(mediaUrl);
+                setMediaSource(mediaPlayer, context, mediaName);
             } catch (IllegalArgumentException | SecurityException | IllegalStateException | IOException e) {
                 e.printStackTrace();
+                onError();
+                return;
             }
 
-            // try to prepare the media
+            // the current media has changed
+            didChangeMedia(mediaName);
+
+            // and start preparing the media asynchronously; the video size and container
+            // will be updated in "onPrepared"
             try {
-                mediaPlayer.prepare();
-            } catch (IOException | IllegalStateException e) {
+                mediaPlayer.prepareMediaAsync();
+            } catch (IllegalStateException e) {
                 e.printStackTrace();
             }
+        }
+    }
+
+    /**
+     * Internal method that determines what type of media Url we're talking about (a file on
+     * disk or a remote Url) and sets it as the data source of the given media player.
+     * Any error in setting the data source is delivered through the player's "onError"
+     *
+     * @param player        the media player to set the data source to
+     * @param context       current activity
+     * @param mediaName     URL or file name
+     * @throws Exception    if the media is neither a file on disk nor a remote url
+     */
+    private void setMediaSource (SimplexMediaPlayer player, Activity context, String mediaName) throws Exception {
+
+        String mediaUrl;
+
+        File file = new File(context.getFilesDir(), mediaName);
+        if (file.exists()) {
+            mediaUrl = file.toString();
+            player.setOfflineBuffer();
+        } else if (Patterns.WEB_URL.matcher(mediaName).matches()){
+            boolean isDownloading = cacheProxy != null && cacheProxy.hasDownload(mediaName);
+            mediaUrl = shouldCacheMedia || isDownloading ? getCacheProxyUrl(context, mediaName) : mediaName;
+            player.setOnlineBuffer();
+        } else {
+            throw new Exception("Media inputted is neither a valid file on disk or a remote url!");
+        }
+
+        player.setDataSource(mediaUrl);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Renditions
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Internal method that selects the rendition of a media source that best fits the current
+     * size of the holder and the estimated bandwidth, and remembers the size it was selected for
+     *
+     * @param source    media source
+     * @return          URL or file name of the selected rendition
+     */
+    private String selectRendition (SimplexSource source) {
+
+        renditionWidth = videoHolder != null ? videoHolder.getMeasuredWidth() : 0;
+        renditionHeight = videoHolder != null ? videoHolder.getMeasuredHeight() : 0;
+
+        SimplexRendition rendition = source.selectRendition(renditionWidth, renditionHeight, getBandwidthEstimate());
+        return rendition != null ? rendition.getMediaName() : null;
+    }
+
+    /**
+     * Internal method called when the holder changes size. If it's a major change (the area
+     * halves or doubles compared to the size the current rendition was selected for) and a
+     * different rendition fits better now, playback switches to it, from the same position
+     * and in the same state.
+     *
+     * @param newWidth  the new width of the holder
+     * @param newHeight the new height of the holder
+     */
+    private void switchRenditionIfNeeded (int newWidth, int newHeight) {
+
+        if (currentSource == null || currentSource.getRenditions().size() < 2 ||
+                mediaPlayer == null || !mediaPlayer.isPrepared() || state == PlaybackState.REWIND) return;
+
+        // only on a major resize
+        long oldArea = (long) renditionWidth * renditionHeight;
+        long newArea = (long) newWidth * newHeight;
+        if (oldArea > 0 && newArea < oldArea * MAJOR_RESIZE_FACTOR && newArea * MAJOR_RESIZE_FACTOR > oldArea) return;
+
+        int oldWidth = renditionWidth, oldHeight = renditionHeight;
+        String rendition = selectRendition(currentSource);
+
+        // the same rendition still fits best, so keep measuring from the old size
+        if (rendition == null || rendition.equals(currentRendition)) {
+            renditionWidth = oldWidth;
+            renditionHeight = oldHeight;
+            return;
+        }
+
+        // switch, keeping the position & state; the next item gets prepared again
+        // once the new rendition is prepared
+        PlaybackState previousState = state;
+        int position = mediaPlayer.getCurrentPosition();
+
+        releaseNextPlayer();
+        currentRendition = rendition;
+
+        try {
+            prepareMedia(rendition);
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        setState(previousState);
+        if (mediaPlayer != null) {
+            mediaPlayer.playFrom(position);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Cache
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Internal method that returns the url that plays a remote media through the cache proxy,
+     * starting the proxy if needed. If the proxy can't be started, the remote url is played
+     * directly.
+     *
+     * @param context   current activity
+     * @param url       the remote media url
+     * @return          the proxy url, or the remote url
+     */
+    private String getCacheProxyUrl (Context context, String url) {
+
+        try {
+            SimplexCacheProxy proxy = getCacheProxy(context);
+            proxy.getCache().setMaxSize(cacheSize);
+            proxy.getScheduler().setWindow(prefetchWindow, prefetchLowWater);
+            proxy.start();
+            return proxy.getProxyUrl(url);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return url;
+        }
+    }
+
+    /**
+     * Internal method that updates the prefetch scheduler with the playhead of the current
+     * media, if it's downloaded through the cache proxy
+     *
+     * @param position      the playback position, in ms
+     * @param duration      the total duration, in ms
+     */
+    private void updatePrefetchPlayhead (int position, int duration) {
+        if (prefetchKey != null && cacheProxy != null && duration > 0) {
+            cacheProxy.getScheduler().updatePlayhead(prefetchKey, position, duration);
+        }
+    }
+
+    /**
+     * Internal method that returns the cache proxy shared by all players, creating it (and
+     * its cache, in the app's cache directory) the first time it's needed
+     *
+     * @param context   current context
+     * @return          the cache proxy
+     */
+    private static synchronized SimplexCacheProxy getCacheProxy (Context context) {
+
+        if (cacheProxy == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "simplex");
+            cacheProxy = new SimplexCacheProxy(new SimplexMediaCache(directory, SimplexMediaCache.DEFAULT_MAX_SIZE));
+            cacheProxy.setBandwidthEstimator(getBandwidthEstimator(context));
+        }
+
+        return cacheProxy;
+    }
+
+    /**
+     * Internal method that returns the bandwidth estimator shared by all players, creating it
+     * (with the history saved in previous sessions) the first time it's needed
+     *
+     * @param context   current context
+     * @return          the bandwidth estimator
+     */
+    private static synchronized SimplexBandwidthEstimator getBandwidthEstimator (Context context) {
+
+        if (bandwidthEstimator == null) {
+            bandwidthEstimator = new SimplexBandwidthEstimator();
+            SimplexNetworkAux.persistHistory(context, bandwidthEstimator);
+            bandwidthEstimator.setNetworkType(SimplexNetworkAux.getNetworkType(context));
+        }
+
+        return bandwidthEstimator;
+    }
 
-            // and update the video size and container
+    /**
+     * Internal method that stops the current download, if there's one, and stops serving it
+     * to the player. What's been downloaded so far is kept for the next time.
+     */
+    private void stopDownload () {
+
+        if (downloader == null) return;
+
+        downloader.cancel();
+        if (cacheProxy != null) {
+            cacheProxy.removeDownload(downloader.getUrl());
+        }
+        downloader = null;
+    }
+
+    /**
+     * Internal method that returns the name of the file a remote media gets downloaded to,
+     * which is unique to its url and keeps its extension, if it has a simple one
+     *
+     * @param url   the remote media url
+     * @return      the file name
+     */
+    private static String getDownloadFileName (String url) {
+
+        String path = Uri.parse(url).getLastPathSegment();
+        int dot = path != null ? path.lastIndexOf('.') : -1;
+        String extension = dot >= 0 && path.length() - dot <= 5 ? path.substring(dot) : "";
+
+        return "simplex_" + SimplexMediaCache.keyFor(url) + extension;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Key frames
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Internal method called every time the media being played changes: it stops holding
+     * back (or, if it was being downloaded to a file, stops) downloads of the previous media
+     * and finds the key frames of the new one
+     *
+     * @param mediaName URL or file name of the new media, or null if there's none
+     */
+    private void didChangeMedia (String mediaName) {
+
+        // a media that was played while downloading has been replaced
+        if (downloader != null && !downloader.getUrl().equals(mediaName)) {
+            stopDownload();
+        }
+
+        if (prefetchKey != null && cacheProxy != null) {
+            cacheProxy.getScheduler().clearPlayhead(prefetchKey);
+        }
+
+        prefetchKey = mediaName != null && shouldCacheMedia && Patterns.WEB_URL.matcher(mediaName).matches() ?
+                SimplexMediaCache.keyFor(mediaName) : null;
+
+        if (mediaName != null) {
+            loadKeyframeIndex(mediaName);
+        }
+
+        // the device might have changed networks since the last media
+        Activity context = getActivity();
+        if (mediaName != null && context != null) {
+            getBandwidthEstimator(context).setNetworkType(SimplexNetworkAux.getNetworkType(context));
+        }
+    }
+
+    /**
+     * Internal method that builds the key frame index of a local media file on a background
+     * thread, if seeks should snap to key frames. Remote media only have an index once
+     * they're fully in the cache.
+     *
+     * @param mediaName URL or file name
+     */
+    private void loadKeyframeIndex (final String mediaName) {
+
+        // forget the index of the previous media
+        keyframeIndex = null;
+        final int request = ++keyframeRequest;
+
+        // get current activity or context
+        Activity context = getActivity();
+
+        if (!shouldSnapToKeyframes || context == null) return;
+
+        // the file is looked up on the background thread too, since the cache may still load
+        final File localFile = new File(context.getFilesDir(), mediaName);
+        final SimplexMediaCache cache = shouldCacheMedia ? getCacheProxy(context).getCache() : null;
+        final Handler handler = new Handler(Looper.getMainLooper());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                File file = localFile.exists() ? localFile : null;
+                if (file == null && cache != null) {
+                    file = cache.getFile(SimplexMediaCache.keyFor(mediaName));
+                }
+
+                SimplexKeyframeIndex index = null;
+                try {
+                    if (file != null) {
+                        index = SimplexMp4Parser.parseKeyframes(file);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+
+                final SimplexKeyframeIndex result = index;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == keyframeRequest) {
+                            keyframeIndex = result;
+                        }
+                    }
+                });
+            }
+        }, "SimplexKeyframes").start();
+    }
+
+    /**
+     * Internal method that snaps a position to the nearest key frame of the current media,
+     * if seeks should snap to key frames and the index is known
+     *
+     * @param position a position in milliseconds
+     * @return         the snapped position
+     */
+    private int snapToKeyframe (int position) {
+        if (shouldSnapToKeyframes && keyframeIndex != null) {
+            return (int) keyframeIndex.snap(position);
+        }
+        return position;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Playlist
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that checks if there is another item after the current one in the playlist
+     *
+     * @return true if there is, false otherwise
+     */
+    private boolean hasNextItem () {
+        return playlistIndex >= 0 && playlistIndex + 1 < playlist.size();
+    }
+
+    /**
+     * Internal method that creates the second media player and starts preparing the next
+     * playlist item with it, in the background
+     */
+    private void prepareNextItem () {
+
+        // get current activity or context
+        Activity context = getActivity();
+
+        // only if there's a next item that's not being prepared already
+        if (context == null || nextPlayer != null || !hasNextItem()) return;
+
+        nextPlayer = new SimplexMediaPlayer();
+        nextPlayer.setPrepareTimeout(prepareTimeout);
+        nextPlayer.setListener(new SimplexMediaPlayer.Listener() {
+            @Override
+            public void onPrepared() {
+                chainNextPlayer();
+            }
+
+            @Override
+            public void onCompletion() {
+                // do nothing; the player becomes the main one before it can complete
+            }
+
+            @Override
+            public void onError() {
+                // drop it; the item will be prepared normally once it's reached
+                releaseNextPlayer();
+            }
+        });
+
+        try {
+            nextRendition = selectRendition(playlist.get(playlistIndex + 1));
+            setMediaSource(nextPlayer, context, nextRendition);
+            nextPlayer.prepareMediaAsync();
+        } catch (Exception e) {
+            e.printStackTrace();
+            releaseNextPlayer();
+        }
+    }
+
+    /**
+     * Internal method that chains the prepared next player to the current one, so that the
+     * platform starts it the moment the current one completes.
+     * "setNextMediaPlayer" is only available from Jelly Bean onwards and hands over playback
+     * without handing over the display surface, so it's only used for items that don't have
+     * a video track; video items are handed over in "advanceToNextItem".
+     */
+    private void chainNextPlayer () {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN &&
+                mediaPlayer != null && mediaPlayer.isPrepared() &&
+                nextPlayer != null && nextPlayer.isPrepared() &&
+                nextPlayer.getVideoWidth() == 0) {
             try {
-                videoView.setVideoSize(mediaPlayer.getVideoWidth(), mediaPlayer.getVideoHeight());
-                videoView.resizeToContainer(videoHolder.getMeasuredWidth(), videoHolder.getMeasuredHeight());
-            } catch (Exception e) {
-                // do nothing
+                mediaPlayer.setNextMediaPlayer(nextPlayer);
+                isNextChained = true;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                isNextChained = false;
+            }
+        }
+    }
+
+    /**
+     * Internal method that advances to the next item in the playlist. If the next player has
+     * already been prepared in the background, it simply becomes the main media player and
+     * starts playing without any re-prepare; otherwise the item gets prepared normally.
+     *
+     * @param fromCompletion whether this happens because the current item completed
+     */
+    private void advanceToNextItem (boolean fromCompletion) {
+
+        playlistIndex++;
+
+        // the next item wasn't prepared in time, so prepare it the normal way
+        if (nextPlayer == null || !nextPlayer.isPrepared()) {
+            releaseNextPlayer();
+            setState(PlaybackState.PLAYING);
+            queueMedia(playlist.get(playlistIndex));
+            return;
+        }
+
+        // swap the players
+        SimplexMediaPlayer previous = mediaPlayer;
+        boolean wasChained = isNextChained;
+        mediaPlayer = nextPlayer;
+        nextPlayer = null;
+        isNextChained = false;
+
+        // the previous one gives up the display, and is released
+        if (previous != null) {
+            previous.setDisplay(null);
+            previous.release();
+        }
+
+        // and the new one takes it over
+        mediaPlayer.setListener(this);
+        currentSource = playlist.get(playlistIndex);
+        currentRendition = nextRendition;
+        didChangeMedia(currentRendition);
+        if (videoView != null && videoView.isSurfaceCreated()) {
+            mediaPlayer.setDisplay(videoView.getHolder());
+            videoView.setVideoSize(mediaPlayer.getVideoWidth(), mediaPlayer.getVideoHeight());
+            videoView.resizeToContainer(videoHolder.getMeasuredWidth(), videoHolder.getMeasuredHeight());
+        }
+
+        // a chained player has already been started by the platform
+        if (wasChained && fromCompletion && mediaPlayer.isPlaying()) {
+            listener.didStart();
+            setState(PlaybackState.PLAYING);
+        } else {
+            play(0);
+        }
+
+        // and start preparing the following item
+        prepareNextItem();
+    }
+
+    /**
+     * Internal method that releases the next player, if there is one
+     */
+    private void releaseNextPlayer () {
+
+        if (nextPlayer != null) {
+            if (isNextChained && mediaPlayer != null &&
+                    Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                try {
+                    mediaPlayer.setNextMediaPlayer(null);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    // do nothing
+                }
             }
+            nextPlayer.release();
+            nextPlayer = null;
         }
+
+        isNextChained = false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Progress
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Internal method that starts the ticker while the video is playing (or the user is
+     * dragging the seek bar) and the player is visible, and stops it otherwise. Either way,
+     * the UI gets updated once, to reflect the current state.
+     */
+    private void updateTicker () {
+
+        if (ticker == null) return;
+
+        if (isStarted && (isScrubbing || state == PlaybackState.PLAYING)) {
+            ticker.stop();
+            ticker.start();
+        } else {
+            ticker.stop();
+            if (isStarted) {
+                ticker.tickOnce();
+            }
+        }
+    }
+
+    /**
+     * Internal method called on every tick, that updates the controller (if it's visible) and
+     * the listener with the progress of the video. The next tick is due every frame while the
+     * user drags the seek bar, otherwise as soon as the progress bar moves by a pixel, if
+     * it's visible, or when the displayed second changes, if not.
+     *
+     * @return the delay until the next tick, in ms
+     */
+    private long updateProgress () {
+
+        int currentTime = mediaPlayer != null ? mediaPlayer.getCurrentPosition() : 0;
+        int totalDuration = mediaPlayer != null ? mediaPlayer.getTotalDuration() : 0;
+        float bufferPercent = mediaPlayer != null ? mediaPlayer.getBufferPercent() : 0;
+        float playbackPercent = totalDuration > 0 ? currentTime / (float) totalDuration : 0;
+
+        // once the video's over, the progress bar stays full
+        if (state == PlaybackState.REWIND) {
+            playbackPercent = 1.0F;
+        }
+
+        // let the prefetch scheduler know where the playhead is
+        updatePrefetchPlayhead(currentTime, totalDuration);
+
+        // call listener
+        if (state == PlaybackState.PLAYING) {
+            listener.didUpdateBuffer(bufferPercent);
+            bandwidthListener.didUpdateBandwidth(getBandwidthEstimate());
+            listener.didUpdatePlayback(SimplexTimeAux.getHours(currentTime),
+                    SimplexTimeAux.getMinutes(currentTime), SimplexTimeAux.getSeconds(currentTime));
+        }
+
+        // and finally update all the UI
+        if (controller != null && isControllerVisible) {
+            controller.render(state, playbackPercent, bufferPercent, currentTime, totalDuration);
+        }
+
+        // work out when the next tick is due
+        if (isScrubbing) {
+            return SimplexTicker.EVERY_FRAME;
+        }
+
+        long delay = SECOND - currentTime % SECOND;
+
+        int width = controller != null && isControllerVisible ? controller.getPlaybackWidth() : 0;
+        if (width > 0 && totalDuration > 0) {
+            delay = Math.min(delay, totalDuration / width);
+        }
+
+        return delay;
+    }
+
+    /**
+     * Internal method that changes the playback state, and starts or stops the ticker
+     * accordingly
+     *
+     * @param state the new state
+     */
+    private void setState (PlaybackState state) {
+        this.state = state;
+        updateTicker();
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -570,7 +1432,7 @@ public class Simplex extends Fragment implements
             listener.didStart();
 
             // set state to "playing"
-            state = PlaybackState.PLAYING;
+            setState(PlaybackState.PLAYING);
 
             // seek to
             mediaPlayer.playFrom(position);
@@ -587,7 +1449,7 @@ public class Simplex extends Fragment implements
             listener.didPause();
 
             // set the state to "paused"
-            state = PlaybackState.PAUSED;
+            setState(PlaybackState.PAUSED);
 
             // pause
             mediaPlayer.pause();
@@ -595,24 +1457,62 @@ public class Simplex extends Fragment implements
     }
 
     /**
-     * Public "Close" method. It deletes everything
+     * Public "Close" method. It deletes everything.
+     * This returns immediately; the media player gets released in the background and the
+     * listener's "didClose" method is called once that has finished.
      */
     public void close () {
 
-        // call listener
-        listener.didClose();
-
         // remove the video view
         videoHolder.removeView(videoView);
         // and controller
-        videoHolder.removeView(controller);
+        if (controller != null) {
+            videoHolder.removeView(controller.getView());
+        }
+
+        // release the player preparing the next playlist item
+        releaseNextPlayer();
+
+        // stop any download that was going to be played; it resumes the next time it's started
+        stopDownload();
+
+        // and stop holding back downloads for the current media
+        didChangeMedia(null);
 
         // and if the media player is OK, remove that too
         if (mediaPlayer != null) {
+            isReleasing = true;
             mediaPlayer.stop();
             mediaPlayer.setDisplay(null);
-            mediaPlayer.release();
+            mediaPlayer.release(new Runnable() {
+                @Override
+                public void run() {
+                    onReleased();
+                }
+            });
             mediaPlayer = null;
+        } else {
+            // call listener
+            listener.didClose();
+        }
+    }
+
+    /**
+     * Internal method called on the main thread once a closed media player has been released.
+     * If a new media has been set in the meantime, it can now be started.
+     */
+    private void onReleased () {
+
+        isReleasing = false;
+
+        // call listener
+        listener.didClose();
+
+        // start any media that was waiting for the release
+        if (pendingMedia != null && videoView != null && videoView.isSurfaceCreated()) {
+            SimplexSource source = pendingMedia;
+            pendingMedia = null;
+            startMedia(source);
         }
     }
 
@@ -624,7 +1524,109 @@ public class Simplex extends Fragment implements
      * Public setter that sets whether the video should auto-start
      */
     public void shouldAutoStart () {
-        state = PlaybackState.AUTOSTART;
+        setState(PlaybackState.AUTOSTART);
+    }
+
+    /**
+     * Public setter that sets whether the media player should be kept prepared when the video
+     * surface is destroyed (on an orientation change or when the activity goes in the
+     * background). The media player is paused and its display detached before the surface
+     * is gone, and the new surface will then just be re-attached to the same media player,
+     * at the saved position, without having to prepare the media again.
+     */
+    public void shouldRetainDecoder () {
+        shouldRetainDecoder = true;
+    }
+
+    /**
+     * Public setter that sets whether seeks done by the user through the controller should
+     * snap to the nearest key frame of the media, so the decoder doesn't have to decode
+     * forward from the previous one. Only works for local MP4 files.
+     */
+    public void shouldSnapToKeyframes () {
+        shouldSnapToKeyframes = true;
+    }
+
+    /**
+     * Public setter that sets whether remote media should be played through a local caching
+     * proxy, so that replays of the same url are served from disk instead of the network
+     */
+    public void shouldCacheMedia () {
+        shouldCacheMedia = true;
+    }
+
+    /**
+     * Public setter that sets whether media set through "downloadMedia" should start playing
+     * right away, while they're downloading, instead of once they're on disk. Both read the
+     * same file, so nothing is downloaded twice, and the file stays for offline replays.
+     */
+    public void shouldPlayWhileDownloading () {
+        shouldPlayWhileDownloading = true;
+    }
+
+    /**
+     * Public setter for the size bound of the media cache (shared by all players). When it's
+     * exceeded, the least recently played media get evicted.
+     *
+     * @param cacheSize the maximum size of the cache, in bytes
+     */
+    public void setCacheSize (long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Public getter for the estimated bandwidth of the current network, measured on everything
+     * the player downloads itself (i.e. remote media played through the cache). Until there
+     * are measurements in this session, it's the last estimate for the same kind of network
+     * from previous sessions.
+     *
+     * @return the estimate in bits per second, or SimplexBandwidthEstimator.NO_ESTIMATE
+     */
+    public long getBandwidthEstimate () {
+
+        Activity context = getActivity();
+
+        if (context != null) {
+            return getBandwidthEstimator(context).getEstimate();
+        } else if (bandwidthEstimator != null) {
+            return bandwidthEstimator.getEstimate();
+        } else {
+            return SimplexBandwidthEstimator.NO_ESTIMATE;
+        }
+    }
+
+    /**
+     * Public setter for how far ahead of the playhead cached remote media get downloaded.
+     * Once a whole window is downloaded, downloading pauses until the playhead is within
+     * the low-water mark of the downloaded data again.
+     *
+     * @param window        the download-ahead window, in ms of media
+     * @param lowWaterMark  how far ahead of the playhead downloading resumes, in ms of media
+     */
+    public void setPrefetchWindow (long window, long lowWaterMark) {
+        this.prefetchWindow = window;
+        this.prefetchLowWater = lowWaterMark;
+    }
+
+    /**
+     * Getter for how many view mutations (i.e. updates to the play button, progress bar and
+     * time labels) the controller performed in the last whole second. Useful to check that
+     * the player only touches its views when what they show actually changes.
+     *
+     * @return the number of view mutations per second, or 0 if there's no controller
+     */
+    public int getControllerMutationsPerSecond () {
+        return controller != null ? controller.getMutationsPerSecond() : 0;
+    }
+
+    /**
+     * Public setter that sets whether the controller should be drawn entirely by a single
+     * view, instead of being built out of subviews. It looks & behaves the same, but it's
+     * much cheaper to create and lay out, e.g. when a screen hosts many players. Must be
+     * called before the player's view is created.
+     */
+    public void shouldUseFlatController () {
+        shouldUseFlatController = true;
     }
 
     /**
@@ -633,22 +1635,57 @@ public class Simplex extends Fragment implements
     public void hideController () {
         isControllerVisible = false;
         if (controller != null) {
-            controller.setVisibility(View.GONE);
+            controller.getView().setVisibility(View.GONE);
         }
+        updateTicker();
     }
 
     /**
-     * Setter for the style
+     * Setter for the style. Styles are immutable, so to change just some parameters of the
+     * current one, build a new one upon it, with "new SimplexStyle.Builder(style)". Setting a
+     * style equal to the current one doesn't update the controller at all.
      *
      * @param style new style
      */
     public void setStyle (SimplexStyle style) {
+        if (style == null || style.equals(this.style)) return;
         this.style = style;
         if (controller != null) {
             controller.updateStyle(style);
         }
     }
 
+    /**
+     * Getter for the style
+     *
+     * @return the current style
+     */
+    public SimplexStyle getStyle () {
+        return style;
+    }
+
+    /**
+     * Setter for the time the player will wait for a media to prepare before calling
+     * the listener's "didError" method
+     *
+     * @param timeout prepare timeout in milliseconds
+     */
+    public void setPrepareTimeout (long timeout) {
+        this.prepareTimeout = timeout;
+        if (mediaPlayer != null) {
+            mediaPlayer.setPrepareTimeout(timeout);
+        }
+    }
+
+    /**
+     * Getter for the average time it takes the media player to complete a seek
+     *
+     * @return average seek latency in milliseconds, or 0 if no seek has completed yet
+     */
+    public int getSeekLatency () {
+        return mediaPlayer != null ? mediaPlayer.getAverageSeekLatency() : 0;
+    }
+
     /**
      * Setter for the listener
      *
@@ -658,6 +1695,15 @@ public class Simplex extends Fragment implements
         this.listener = listener != null ? listener : this.listener;
     }
 
+    /**
+     * Setter for the optional bandwidth listener
+     *
+     * @param listener new bandwidth listener instance
+     */
+    public void setBandwidthListener (BandwidthListener listener) {
+        this.bandwidthListener = listener != null ? listener : this.bandwidthListener;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // Interface for the video player
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -688,7 +1734,7 @@ public class Simplex extends Fragment implements
         void didError ();
 
         /**
-         * Called when the player closes alltogether
+         * Called when the player closes alltogether, once its media player has been released
          */
         void didClose ();
 
@@ -708,4 +1754,17 @@ public class Simplex extends Fragment implements
          */
         void didUpdatePlayback (int hour, int minute, int second);
     }
+
+    /**
+     * Optional interface for receiving the bandwidth estimate while the media plays
+     */
+    public interface BandwidthListener {
+
+        /**
+         * Called together with "didUpdateBuffer", with the current bandwidth estimate
+         *
+         * @param bitrate estimated bandwidth in bits per second, or -1 if there's none yet
+         */
+        void didUpdateBandwidth (long bitrate);
+    }
 }
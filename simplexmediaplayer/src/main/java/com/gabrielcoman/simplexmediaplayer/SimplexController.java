@@ -12,7 +12,6 @@ import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
-import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTime;
 import com.gabrielcoman.simplexmediaplayer.controller.IndicatorBackground;
 import com.gabrielcoman.simplexmediaplayer.controller.PlayButton;
 import com.gabrielcoman.simplexmediaplayer.controller.PlaybackIndicator;
@@ -22,6 +21,7 @@ import com.gabrielcoman.simplexmediaplayer.controller.TimeIndicator;
  * Class that is a custom media controller built on top of a relative layout
  */
 public class SimplexController extends RelativeLayout implements
+        SimplexControls,
         PlayButton.Listener,
         PlaybackIndicator.Listener
 {
@@ -40,6 +40,16 @@ public class SimplexController extends RelativeLayout implements
     // the style that's going to be applied to the controller
     private SimplexStyle        style;
 
+    // the last snapshot applied to the subviews (empty until the first one), the spare one
+    // the next is filled into, and whether the playback indicator differs from the applied
+    // one because the user dragged it
+    private SimplexRenderModel  model               = new SimplexRenderModel();
+    private SimplexRenderModel  spareModel          = new SimplexRenderModel();
+    private boolean             isPlaybackStale     = false;
+
+    // counter of the view mutations the controller performs
+    private SimplexMutationCounter mutations        = new SimplexMutationCounter();
+
     // instance of the Listener that allows the controller to send callbacks
     // to the main Simplex player
     private Listener            listener;
@@ -60,6 +70,7 @@ public class SimplexController extends RelativeLayout implements
         // set a new default listener so I don't have to do a null check
         listener = new Listener() {
             @Override public void didClickOnPlaybackButton() {}
+            @Override public void shouldScrubToPercent(float percent) {}
             @Override public void shouldAdvanceToPercent(float percent) {}};
     }
 
@@ -99,7 +110,6 @@ public class SimplexController extends RelativeLayout implements
                 new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, CONTROLLER_HEIGHT);
         indicatorBackgroundParams.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
         background.setLayoutParams(indicatorBackgroundParams);
-        background.updateStyle(style);
         addView(background);
 
         // the current time text view indicator
@@ -137,28 +147,129 @@ public class SimplexController extends RelativeLayout implements
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Method that updates the current controller style
+     * Method that updates the current controller style. Only the subviews whose parameters
+     * differ from those of the current style get updated, and if the new style is equal to
+     * the current one, nothing does.
      *
      * @param style a new style instance
      */
-    void updateStyle (SimplexStyle style) {
+    @Override
+    public void updateStyle (SimplexStyle style) {
+
+        SimplexStyle previous = this.style;
+        if (style == null || style.equals(previous)) return;
 
         // get the style
         this.style = style;
 
-        play.updateStyle(style);
-        playback.updateStyle(style);
-        currentTime.updateStyle(style);
-        totalTime.updateStyle(style);
-        background.updateStyle(style);
+        int count = 0;
+
+        // the play button shows the mask color & the bitmaps, so it's shown in the current
+        // state again, in case that's one with a bitmap
+        if (previous.getMaskColor() != style.getMaskColor() || !previous.hasSameBitmaps(style)) {
+            play.updateStyle(style);
+            if (!model.isEmpty()) {
+                updateButtonPlaybackForState(model.state);
+            }
+            count++;
+        }
+
+        if (previous.getLengthColor() != style.getLengthColor() ||
+                previous.getBufferColor() != style.getBufferColor() ||
+                previous.getPlaybackColor() != style.getPlaybackColor()) {
+            playback.updateStyle(style);
+            count++;
+        }
+
+        if (previous.getTextColor() != style.getTextColor()) {
+            currentTime.updateStyle(style);
+            totalTime.updateStyle(style);
+            count += 2;
+        }
+
+        mutations.count(count);
+    }
+
+    /**
+     * Method that brings the controller in line with a new snapshot of what it displays. The
+     * snapshot is compared with the last one that was applied and only the subviews whose
+     * values changed get updated; if nothing changed, as displayed, no snapshot is even filled.
+     * The playback indicator is left alone while the user's controlling it with his finger.
+     *
+     * @param state         the current playback state
+     * @param playback      the fraction of the video that's been played
+     * @param buffer        the fraction of the video that's been buffered
+     * @param currentTime   the current time, in ms
+     * @param totalTime     the total time, in ms
+     */
+    @Override
+    public void render (Simplex.PlaybackState state, float playback, float buffer, long currentTime,
+                 long totalTime) {
+
+        int width = this.playback.getTrackWidth();
+
+        if (!model.isEmpty() && !isPlaybackStale &&
+                model.matches(state, playback, buffer, currentTime, totalTime, width)) {
+            return;
+        }
+
+        // fill the spare snapshot & swap it with the applied one
+        SimplexRenderModel previous = model;
+        spareModel.set(state, playback, buffer, currentTime, totalTime, width);
+        model = spareModel;
+        spareModel = previous;
+
+        apply(previous, model);
+    }
+
+    /**
+     * Method that updates the subviews whose values differ between two snapshots
+     *
+     * @param previous  the last snapshot that was applied, or an empty one to update everything
+     * @param next      the new snapshot
+     */
+    private void apply (SimplexRenderModel previous, SimplexRenderModel next) {
+
+        boolean isFirst = previous.isEmpty();
+        int count = 0;
+
+        if (isFirst || previous.state != next.state) {
+            updateButtonPlaybackForState(next.state);
+            count++;
+        }
+
+        if ((isFirst || isPlaybackStale || previous.playback != next.playback) &&
+                !playback.isUserControlled()) {
+            playback.updatePlayback(next.playback);
+            playback.updateThumb(next.playback);
+            isPlaybackStale = false;
+            count += 2;
+        }
+
+        if (isFirst || previous.buffer != next.buffer) {
+            playback.updateBuffer(next.buffer);
+            count++;
+        }
+
+        if (isFirst || previous.currentSecond != next.currentSecond) {
+            currentTime.updateTime(next.currentSecond * 1000);
+            count++;
+        }
+
+        if (isFirst || previous.totalSecond != next.totalSecond) {
+            totalTime.updateTime(next.totalSecond * 1000);
+            count++;
+        }
+
+        mutations.count(count);
     }
 
     /**
-     * Public method that updates the playback button depending on the current playback state
+     * Method that updates the playback button depending on the current playback state
      *
      * @param state current playback state
      */
-    void updateButtonPlaybackForState (Simplex.PlaybackState state) {
+    private void updateButtonPlaybackForState (Simplex.PlaybackState state) {
 
         switch (state) {
             case NOTSTARTED:
@@ -179,57 +290,35 @@ public class SimplexController extends RelativeLayout implements
     }
 
     /**
-     * Public method that will update the playback indicator to the current percentage of the
-     * video that's been played.
-     * It will only do so if the user's not controlling the movie playback with his finger
-     *
-     * @param percent current percent of the movie.
-     */
-    void updatePlayback (float percent) {
-        if (!playback.isUserControlled()) {
-            playback.updatePlayback(percent);
-        }
-    }
-
-    /**
-     * Public method that updates the seek-bar thumb to the current percentage of the video
-     * that's been played.
-     * It will only do so if the user's not controlling the movie playback with his finger.
-     *
-     * @param percent current percent of the movie.
-     */
-    void updateThumb (float percent) {
-        if (!playback.isUserControlled()) {
-            playback.updateThumb(percent);
-        }
-    }
-
-    /**
-     * Public method that updates the buffer indicator to the current percentage of the video
-     * that's been played.
+     * Public method that returns the width of the playback indicator, i.e. how many pixels
+     * the playback can move by
      *
-     * @param percent current percent of the movie.
+     * @return the width in pixels, or 0 if it's not been laid out yet
      */
-    void updateBuffer (float percent) {
-        playback.updateBuffer(percent);
+    @Override
+    public int getPlaybackWidth () {
+        return playback.getTrackWidth();
     }
 
     /**
-     * Public method that updates the text for the total time
+     * Public method that returns how many view mutations (i.e. updates pushed to the
+     * subviews) the controller performed in the last whole second
      *
-     * @param time a new instance of a SimplexTime object
+     * @return the number of view mutations per second
      */
-    void updateTotalTime (SimplexTime time) {
-        totalTime.updateText(time);
+    @Override
+    public int getMutationsPerSecond () {
+        return mutations.getPerSecond();
     }
 
     /**
-     * Public method that updates the current time text
+     * Method that returns the controller itself, since it's a view
      *
-     * @param time a new instance of a SimplexTime object
+     * @return the controller
      */
-    void updateCurrentTime (SimplexTime time) {
-        currentTime.updateText(time);
+    @Override
+    public View getView () {
+        return this;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -241,8 +330,15 @@ public class SimplexController extends RelativeLayout implements
         listener.didClickOnPlaybackButton();
     }
 
+    @Override
+    public void didScrub(float percent) {
+        listener.shouldScrubToPercent(percent);
+    }
+
     @Override
     public void didStopTracking(float percent) {
+        // the playback indicator shows where the user let go, not what was last applied
+        isPlaybackStale = true;
         listener.shouldAdvanceToPercent(percent);
     }
 
@@ -255,35 +351,8 @@ public class SimplexController extends RelativeLayout implements
      *
      * @param listener a new instance of Listener
      */
+    @Override
     public void setListener (Listener listener) {
         this.listener = listener != null ? listener : this.listener;
     }
-
-
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-    // Public interface that a Simplex player must implement to talk with the controllers
-    ////////////////////////////////////////////////////////////////////////////////////////////////
-
-    /**
-     * Listener that must be implemented by the SimplexPlayer in order to get callbacks from
-     * the controller.
-     *
-     */
-    interface Listener {
-
-        /**
-         * Method implemented by the interface. Gets called when someone clicks on the
-         * big play button
-         *
-         */
-        void didClickOnPlaybackButton ();
-
-        /**
-         * Method implemented by the interface. It informs whoever's implemented the interface
-         * that it should advance to a certain percent of the video playback length.
-         *
-         * @param percent percent to advance to
-         */
-        void shouldAdvanceToPercent (float percent);
-    }
 }
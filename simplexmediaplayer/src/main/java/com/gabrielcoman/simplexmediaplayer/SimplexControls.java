@@ -0,0 +1,98 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.view.View;
+
+import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
+
+/**
+ * Interface implemented by the controllers a Simplex player can display on top of the video:
+ * the default SimplexController, built out of subviews, and the SimplexFlatController, that
+ * draws everything in a single view
+ */
+interface SimplexControls {
+
+    /**
+     * Method that returns the view of the controller, to add to the player
+     *
+     * @return the view
+     */
+    View getView ();
+
+    /**
+     * Method that updates the current controller style
+     *
+     * @param style a new style instance
+     */
+    void updateStyle (SimplexStyle style);
+
+    /**
+     * Method that brings the controller in line with what it should display
+     *
+     * @param state         the current playback state
+     * @param playback      the fraction of the video that's been played
+     * @param buffer        the fraction of the video that's been buffered
+     * @param currentTime   the current time, in ms
+     * @param totalTime     the total time, in ms
+     */
+    void render (Simplex.PlaybackState state, float playback, float buffer, long currentTime,
+                 long totalTime);
+
+    /**
+     * Method that returns the width of the playback track, i.e. how many pixels the playback
+     * can move by
+     *
+     * @return the width in pixels, or 0 if it's not been laid out yet
+     */
+    int getPlaybackWidth ();
+
+    /**
+     * Method that returns how many view mutations the controller performed in the last
+     * whole second
+     *
+     * @return the number of view mutations per second
+     */
+    int getMutationsPerSecond ();
+
+    /**
+     * Setter method for the controller's own listener
+     *
+     * @param listener a new instance of Listener
+     */
+    void setListener (Listener listener);
+
+    /**
+     * Listener that must be implemented by the SimplexPlayer in order to get callbacks from
+     * the controller.
+     *
+     */
+    interface Listener {
+
+        /**
+         * Method implemented by the interface. Gets called when someone clicks on the
+         * big play button
+         *
+         */
+        void didClickOnPlaybackButton ();
+
+        /**
+         * Method implemented by the interface. It informs whoever's implemented the interface
+         * that the user is dragging the seek bar and the video should show a certain percent
+         * of the video playback length, as fast as possible.
+         *
+         * @param percent percent to scrub to
+         */
+        void shouldScrubToPercent (float percent);
+
+        /**
+         * Method implemented by the interface. It informs whoever's implemented the interface
+         * that it should advance to a certain percent of the video playback length.
+         *
+         * @param percent percent to advance to
+         */
+        void shouldAdvanceToPercent (float percent);
+    }
+}
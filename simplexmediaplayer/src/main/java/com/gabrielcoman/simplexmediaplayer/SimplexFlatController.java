@@ -0,0 +1,576 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
+
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexGlyphDrawable;
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexGradientDrawable;
+import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
+import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTimeAux;
+import com.gabrielcoman.simplexmediaplayer.controller.ControllerAux;
+
+/**
+ * Class that is a media controller drawn entirely by a single view: the play / replay glyph
+ * over its mask, the bottom gradient, the time labels and the progress bar. It looks and
+ * behaves just like the SimplexController, but without its hierarchy of subviews, so it's
+ * much cheaper to create, measure & lay out, e.g. for screens hosting many players.
+ * Touches are hit-tested by hand: dragging along the progress bar seeks, any other tap
+ * clicks the play button.
+ */
+public class SimplexFlatController extends View implements SimplexControls {
+
+    // constants that match the sizes of the SimplexController subviews (the progress bar &
+    // time labels share theirs through the ControllerAux)
+    private static final int    CONTROLLER_HEIGHT = 80;
+    private static final int    TEXT_SIZE_SP      = 14;
+
+    // weights the time labels & the progress bar share the width of the controller by
+    private static final int    TIME_WEIGHT       = 1;
+    private static final int    TRACK_WEIGHT      = 50;
+
+    // paints for custom bitmaps, the mask, the tracks & the thumb, and the time labels
+    private Paint               bitmapPaint       = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private Paint               maskPaint         = new Paint();
+    private Paint               lengthPaint       = new Paint();
+    private Paint               bufferPaint       = new Paint();
+    private Paint               playbackPaint     = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private Paint               textPaint         = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // rect reused to draw custom bitmaps into
+    private RectF               bitmapRect        = new RectF();
+
+    // the built-in glyphs & the bottom gradient
+    private Drawable            playGlyph;
+    private Drawable            replayGlyph;
+    private Drawable            gradient;
+
+    // the style that's going to be applied to the controller
+    private SimplexStyle        style;
+
+    // the last snapshot applied (empty until the first one), the spare one the next is
+    // filled into, and whether the progress bar differs from the applied one because the
+    // user dragged it
+    private SimplexRenderModel  model             = new SimplexRenderModel();
+    private SimplexRenderModel  spareModel        = new SimplexRenderModel();
+    private boolean             isPlaybackStale   = false;
+
+    // the displayed times, formatted into reused char arrays, & the zero digit of the locale
+    private char[]              currentChars      = new char[SimplexTimeAux.MAX_TIME_CHARS];
+    private char[]              totalChars        = new char[SimplexTimeAux.MAX_TIME_CHARS];
+    private int                 currentCount      = 0;
+    private int                 totalCount        = 0;
+    private char                zeroDigit;
+
+    // horizontal layout of the bottom band: where the progress bar region starts & ends
+    private float               trackLeft         = 0;
+    private float               trackRight        = 0;
+
+    // touch state: whether the user is dragging the progress bar (and where to), or has
+    // pressed somewhere else, which clicks the play button if he lets go without moving
+    private boolean             userControlled    = false;
+    private float               dragPercent       = 0;
+    private boolean             isClicking        = false;
+    private float               downX             = 0;
+    private float               downY             = 0;
+    private int                 touchSlop;
+
+    // counter of the view mutations the controller performs
+    private SimplexMutationCounter mutations      = new SimplexMutationCounter();
+
+    // instance of the Listener that allows the controller to send callbacks
+    // to the main Simplex player
+    private Listener            listener;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Controller constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Normal constructor with context
+     *
+     * @param context the current context (activity or fragment)
+     */
+    SimplexFlatController(Context context) {
+        this(context, null, 0);
+    }
+
+    /**
+     * Constructor with context and attribute set
+     *
+     * @param context the current context (activity or fragment)
+     * @param attrs   a new attribute set
+     */
+    SimplexFlatController(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    /**
+     * Constructor with context, attribute set and default style attribute
+     *
+     * @param context       the current context (activity or fragment)
+     * @param attrs         a new attribute set
+     * @param defStyleAttr  the default style attribute
+     */
+    SimplexFlatController(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        // set a new default listener so I don't have to do a null check
+        listener = new Listener() {
+            @Override public void didClickOnPlaybackButton() {}
+            @Override public void shouldScrubToPercent(float percent) {}
+            @Override public void shouldAdvanceToPercent(float percent) {}};
+
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        playGlyph = new SimplexGlyphDrawable(SimplexGlyphDrawable.Glyph.PLAY);
+        replayGlyph = new SimplexGlyphDrawable(SimplexGlyphDrawable.Glyph.REPLAY);
+        gradient = new SimplexGradientDrawable();
+
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                getResources().getDisplayMetrics()));
+
+        // both labels start at zero, like a new TimeIndicator
+        zeroDigit = SimplexTimeAux.getZeroDigit();
+        currentCount = SimplexTimeAux.formatTime(0, zeroDigit, currentChars);
+        totalCount = SimplexTimeAux.formatTime(0, zeroDigit, totalChars);
+
+        updateStyle(SimplexStyle.defaultStyle());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Update UI methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that updates the current controller style. If the new style is equal to the
+     * current one, nothing gets redrawn.
+     *
+     * @param style a new style instance
+     */
+    @Override
+    public void updateStyle (SimplexStyle style) {
+
+        if (style == null || style.equals(this.style)) return;
+        this.style = style;
+
+        maskPaint.setColor(style.getMaskColor());
+        maskPaint.setAlpha((int) (Color.alpha(style.getMaskColor()) * ControllerAux.MASK_ALPHA));
+        ControllerAux.setTrackColor(lengthPaint, style.getLengthColor());
+        ControllerAux.setTrackColor(bufferPaint, style.getBufferColor());
+        playbackPaint.setColor(style.getPlaybackColor());
+        textPaint.setColor(style.getTextColor());
+
+        invalidate();
+        mutations.count(1);
+    }
+
+    /**
+     * Method that brings the controller in line with a new snapshot of what it displays. The
+     * snapshot is compared with the last one that was applied and only the parts of the view
+     * that changed get redrawn; if nothing changed, as displayed, no snapshot is even filled.
+     * The progress bar is left alone while the user's dragging it.
+     *
+     * @param state         the current playback state
+     * @param playback      the fraction of the video that's been played
+     * @param buffer        the fraction of the video that's been buffered
+     * @param currentTime   the current time, in ms
+     * @param totalTime     the total time, in ms
+     */
+    @Override
+    public void render (Simplex.PlaybackState state, float playback, float buffer, long currentTime,
+                        long totalTime) {
+
+        int width = getPlaybackWidth();
+
+        if (!model.isEmpty() && !isPlaybackStale &&
+                model.matches(state, playback, buffer, currentTime, totalTime, width)) {
+            return;
+        }
+
+        // fill the spare snapshot & swap it with the applied one
+        SimplexRenderModel previous = model;
+        spareModel.set(state, playback, buffer, currentTime, totalTime, width);
+        model = spareModel;
+        spareModel = previous;
+
+        apply(previous, model);
+    }
+
+    /**
+     * Method that redraws the parts of the view that differ between two snapshots
+     *
+     * @param previous  the last snapshot that was applied, or an empty one to redraw everything
+     * @param next      the new snapshot
+     */
+    private void apply (SimplexRenderModel previous, SimplexRenderModel next) {
+
+        boolean isFirst = previous.isEmpty();
+
+        boolean isCurrentChanged = isFirst || previous.currentSecond != next.currentSecond;
+        boolean isTotalChanged = isFirst || previous.totalSecond != next.totalSecond;
+
+        int oldCurrentCount = currentCount;
+        int oldTotalCount = totalCount;
+
+        if (isCurrentChanged) {
+            currentCount = SimplexTimeAux.formatTime(next.currentSecond * 1000, zeroDigit, currentChars);
+        }
+        if (isTotalChanged) {
+            totalCount = SimplexTimeAux.formatTime(next.totalSecond * 1000, zeroDigit, totalChars);
+        }
+
+        // a new state redraws everything, since the mask & glyph cover the whole view, and
+        // so does a time of a new format (e.g. once it reaches an hour), since it changes the
+        // width of its label, and so where everything else in the band is
+        if (isFirst || previous.state != next.state ||
+                currentCount != oldCurrentCount || totalCount != oldTotalCount) {
+            layoutBand();
+            isPlaybackStale = false;
+            invalidate();
+            mutations.count(1);
+            return;
+        }
+
+        int count = 0;
+
+        if (isCurrentChanged) {
+            invalidate(0, getBandTop(), (int) Math.ceil(trackLeft), getHeight());
+            count++;
+        }
+
+        if (isTotalChanged) {
+            invalidate((int) trackRight, getBandTop(), getWidth(), getHeight());
+            count++;
+        }
+
+        if ((isPlaybackStale || previous.playback != next.playback) && !userControlled) {
+            invalidateBetween(isPlaybackStale ? dragPercent : previous.playback, next.playback, ControllerAux.SEEKBAR_MARGIN);
+            isPlaybackStale = false;
+            count++;
+        }
+
+        if (previous.buffer != next.buffer) {
+            invalidateBetween(previous.buffer, next.buffer, 0);
+            count++;
+        }
+
+        mutations.count(count);
+    }
+
+    /**
+     * Method that returns the width of the progress bar, i.e. how many pixels the playback
+     * can move by
+     *
+     * @return the width in pixels, or 0 if it's not been laid out yet
+     */
+    @Override
+    public int getPlaybackWidth () {
+        return ControllerAux.getTrackWidth(trackLeft, trackRight);
+    }
+
+    /**
+     * Public method that returns how many view mutations (i.e. redraws of parts of the view)
+     * the controller performed in the last whole second
+     *
+     * @return the number of view mutations per second
+     */
+    @Override
+    public int getMutationsPerSecond () {
+        return mutations.getPerSecond();
+    }
+
+    /**
+     * Method that returns the controller itself, since it's a view
+     *
+     * @return the controller
+     */
+    @Override
+    public View getView () {
+        return this;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Layout
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Overridden View method that lays the glyphs, the gradient & the bottom band out again
+     * for the new size
+     *
+     * @param w     the new width
+     * @param h     the new height
+     * @param oldw  the old width
+     * @param oldh  the old height
+     */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        playGlyph.setBounds(0, 0, w, h);
+        replayGlyph.setBounds(0, 0, w, h);
+        gradient.setBounds(0, getBandTop(), w, h);
+        layoutBand();
+    }
+
+    /**
+     * Method that works out where the progress bar goes, between the time labels. Just like
+     * in the SimplexController's linear layout, each label is as wide as the widest time of
+     * its format, and whatever width is left is shared by weight.
+     */
+    private void layoutBand () {
+
+        float currentWidth = getTimeWidth(currentChars, currentCount);
+        float totalWidth = getTimeWidth(totalChars, totalCount);
+        float excess = Math.max(0, getWidth() - currentWidth - totalWidth);
+        float weights = 2 * TIME_WEIGHT + TRACK_WEIGHT;
+
+        trackLeft = currentWidth + excess * TIME_WEIGHT / weights;
+        trackRight = trackLeft + excess * TRACK_WEIGHT / weights;
+    }
+
+    /**
+     * Method that returns the width of a time label, just like a TimeIndicator's
+     *
+     * @param chars the chars of the time
+     * @param count the number of chars
+     * @return      the width, padding included
+     */
+    private float getTimeWidth (char[] chars, int count) {
+        return ControllerAux.getTimeWidth(textPaint, zeroDigit, chars, count) + 2 * ControllerAux.TIME_PADDING_HORZ;
+    }
+
+    /**
+     * Method that returns where the bottom band starts
+     *
+     * @return the y position
+     */
+    private int getBandTop () {
+        return Math.max(0, getHeight() - CONTROLLER_HEIGHT);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Drawing
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Overridden View method that draws the whole controller
+     *
+     * @param canvas the canvas to draw on
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        if (style == null) return;
+
+        // the mask & the play or replay glyph (or the style's custom bitmap for it), while
+        // the video's not playing
+        Simplex.PlaybackState state = model.state;
+        if (state == Simplex.PlaybackState.NOTSTARTED || state == Simplex.PlaybackState.PAUSED) {
+            canvas.drawRect(0, 0, getWidth(), getHeight(), maskPaint);
+            if (style.hasCustomPlayBitmap()) {
+                drawCentered(canvas, style.getPlayBitmap());
+            } else {
+                playGlyph.draw(canvas);
+            }
+        } else if (state == Simplex.PlaybackState.REWIND) {
+            canvas.drawRect(0, 0, getWidth(), getHeight(), maskPaint);
+            if (style.hasCustomReplayBitmap()) {
+                drawCentered(canvas, style.getReplayBitmap());
+            } else {
+                replayGlyph.draw(canvas);
+            }
+        }
+
+        // the bottom gradient
+        int bandTop = getBandTop();
+        gradient.draw(canvas);
+
+        // the time labels, centered in their part of the band
+        float centerY = (bandTop + getHeight()) / 2.0F;
+        float baseline = centerY - (textPaint.ascent() + textPaint.descent()) / 2.0F;
+        canvas.drawText(currentChars, 0, currentCount, trackLeft / 2.0F, baseline, textPaint);
+        canvas.drawText(totalChars, 0, totalCount, (trackRight + getWidth()) / 2.0F, baseline, textPaint);
+
+        // the tracks & the thumb
+        float playback = userControlled || isPlaybackStale ? dragPercent : model.playback;
+        float buffer = model.buffer;
+        ControllerAux.drawTrack(canvas, trackLeft, trackRight, centerY, buffer, playback, playback,
+                lengthPaint, bufferPaint, playbackPaint);
+    }
+
+    /**
+     * Method that draws a custom bitmap as large as it fits in the view, keeping its aspect
+     * ratio and centered, the way the SimplexController's play button shows it
+     *
+     * @param canvas    the canvas to draw on
+     * @param bitmap    the bitmap
+     */
+    private void drawCentered (Canvas canvas, Bitmap bitmap) {
+
+        if (bitmap.getWidth() <= 0 || bitmap.getHeight() <= 0) return;
+
+        float scale = Math.min(getWidth() / (float) bitmap.getWidth(), getHeight() / (float) bitmap.getHeight());
+        float width = bitmap.getWidth() * scale;
+        float height = bitmap.getHeight() * scale;
+        float left = (getWidth() - width) / 2.0F;
+        float top = (getHeight() - height) / 2.0F;
+
+        bitmapRect.set(left, top, left + width, top + height);
+        canvas.drawBitmap(bitmap, null, bitmapRect, bitmapPaint);
+    }
+
+    /**
+     * Method that redraws only the part of the progress bar between two fractions, if
+     * they're on different pixels
+     *
+     * @param from      the previous fraction
+     * @param to        the new fraction
+     * @param extra     extra pixels to redraw on each side, e.g. for the thumb
+     */
+    private void invalidateBetween (float from, float to, int extra) {
+        ControllerAux.invalidateBetween(this, trackLeft, trackRight, getBandTop(), getHeight(), from, to, extra);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Touch
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Overridden View method that hit-tests touches: a touch that starts on the progress bar
+     * drags it (calling the listener's "shouldScrubToPercent" and, once the user lets go,
+     * "shouldAdvanceToPercent"); any other tap clicks the play button
+     *
+     * @param event the touch event
+     * @return      true, since the view handles all touches
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+
+        if (!isEnabled()) return false;
+
+        float x = event.getX();
+        float y = event.getY();
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                if (y >= getBandTop() && x >= trackLeft && x < trackRight && getPlaybackWidth() > 0) {
+                    userControlled = true;
+
+                    // the parent shouldn't take the drag over, e.g. to scroll
+                    ViewParent parent = getParent();
+                    if (parent != null) {
+                        parent.requestDisallowInterceptTouchEvent(true);
+                    }
+
+                    drag(x);
+                    listener.shouldScrubToPercent(dragPercent);
+                } else {
+                    isClicking = true;
+                    downX = x;
+                    downY = y;
+                    setPressed(true);
+                }
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                if (userControlled) {
+                    drag(x);
+                    listener.shouldScrubToPercent(dragPercent);
+                } else if (isClicking && (Math.abs(x - downX) > touchSlop || Math.abs(y - downY) > touchSlop)) {
+                    isClicking = false;
+                    setPressed(false);
+                }
+                break;
+            }
+            case MotionEvent.ACTION_UP: {
+                if (userControlled) {
+                    drag(x);
+                    stopTracking();
+                } else if (isClicking) {
+                    isClicking = false;
+                    setPressed(false);
+                    performClick();
+                }
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL: {
+                if (userControlled) {
+                    stopTracking();
+                }
+                isClicking = false;
+                setPressed(false);
+                break;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Overridden View method, that clicks the play button, so accessibility services can
+     * "click" the view too
+     *
+     * @return true, since the click is always handled
+     */
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        listener.didClickOnPlaybackButton();
+        return true;
+    }
+
+    /**
+     * Method that moves the progress bar to where the user's dragging it
+     *
+     * @param x the x position of the touch
+     */
+    private void drag (float x) {
+
+        float previous = userControlled || isPlaybackStale ? dragPercent : model.playback;
+        dragPercent = ControllerAux.fractionAt(trackLeft, trackRight, x);
+
+        invalidateBetween(previous, dragPercent, ControllerAux.SEEKBAR_MARGIN);
+        mutations.count(1);
+    }
+
+    /**
+     * Method called when the user has stopped dragging the progress bar. It keeps showing
+     * where the user let go until the next snapshot is applied.
+     */
+    private void stopTracking () {
+
+        userControlled = false;
+        isPlaybackStale = true;
+
+        listener.shouldAdvanceToPercent(dragPercent);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Set different listeners methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Setter method for the controller's own listener
+     *
+     * @param listener a new instance of Listener
+     */
+    @Override
+    public void setListener (Listener listener) {
+        this.listener = listener != null ? listener : this.listener;
+    }
+}
@@ -5,35 +5,177 @@
 package com.gabrielcoman.simplexmediaplayer;
 
 import android.media.MediaPlayer;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.view.SurfaceHolder;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Custom media player
+ * Custom media player.
+ * The actual Android MediaPlayer is owned by a dedicated player thread, shared by all Simplex
+ * media players, and every native media call happens on that thread. This class is the main
+ * thread facade to it: calls made on it are sent as commands to the player thread (redundant
+ * seeks and play / pause commands are coalesced), while state such as the current position,
+ * duration or buffer percent is published back and cached, so reading it never blocks.
+ * The only exception is detaching the display when a surface gets destroyed, which waits (for
+ * a short while at most) for the player thread, since the surface is gone right after.
+ * All Listener callbacks are delivered on the main thread.
+ * Seeks are scheduled so that only one is ever in flight in the native player: while it's
+ * running, only the newest requested target is kept, and it's performed once the previous
+ * seek completes. While the user scrubs, seeks are also rate limited to the speed at which
+ * they actually complete, and use fast seeks to the closest sync frame where available.
+ * Releasing the actual media player (which waits for the codecs to be torn down) happens on a
+ * separate background executor, so it doesn't hold up the player thread either.
  */
-public class SimplexMediaPlayer extends MediaPlayer implements
+public class SimplexMediaPlayer implements
         MediaPlayer.OnPreparedListener,
         MediaPlayer.OnCompletionListener,
         MediaPlayer.OnErrorListener,
-        MediaPlayer.OnBufferingUpdateListener
+        MediaPlayer.OnBufferingUpdateListener,
+        MediaPlayer.OnInfoListener,
+        MediaPlayer.OnSeekCompleteListener
 {
 
-    // private state vars
-    private int      mLastPosition  = 0;
-    private int      mTotalDuration = 0;
-    private float    mBufferPercent = 0;
+    // default time (in ms) the media player is allowed to spend preparing a media resource
+    // before giving up and reporting an error
+    static final long DEFAULT_PREPARE_TIMEOUT = 15000;
+
+    // interval (in ms) at which the player thread publishes the current position while playing
+    private static final int POSITION_POLL_INTERVAL = 100;
+
+    // weight of the latest seek latency in the average seek latency
+    private static final float SEEK_LATENCY_WEIGHT  = 0.25F;
+
+    // value of the pending seek target when there's no seek waiting
+    private static final int NO_SEEK                = -1;
+
+    // minimum interval (in ms) between two scrub seeks
+    private static final int MIN_SCRUB_INTERVAL     = 50;
+
+    // maximum time (in ms) the main thread waits for the player thread to detach a display
+    private static final long DETACH_TIMEOUT        = 500;
+
+    // seek modes
+    private static final int SEEK_PRECISE           = 0;
+    private static final int SEEK_FAST              = 1;
+
+    // commands that can be sent to the player thread
+    private static final int MSG_CREATE      = 1;
+    private static final int MSG_SET_DISPLAY = 2;
+    private static final int MSG_SET_SOURCE  = 3;
+    private static final int MSG_PREPARE     = 4;
+    private static final int MSG_SEEK        = 5;
+    private static final int MSG_START       = 6;
+    private static final int MSG_PAUSE       = 7;
+    private static final int MSG_STOP        = 8;
+    private static final int MSG_RESET       = 9;
+    private static final int MSG_RELEASE     = 10;
+    private static final int MSG_SET_NEXT    = 11;
+    private static final int MSG_POLL        = 12;
+
+    // enum holding the internal preparation state of the media player
+    enum PrepareState {
+        IDLE,
+        PREPARING,
+        PREPARED,
+        STOPPED
+    }
+
+    // the thread shared by all media players
+    private static HandlerThread   playerThread    = null;
+
+    // the background executor on which media players get released
+    private static ExecutorService releaseExecutor = null;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Main thread state
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private PrepareState mPrepareState   = PrepareState.IDLE;
+    private long         mPrepareTimeout = DEFAULT_PREPARE_TIMEOUT;
+
+    // generation of the current media; incremented on every reset so that callbacks coming
+    // from the player thread for a previous media can be told apart and ignored
+    private int          mGeneration     = 0;
+
+    // handler used to deliver callbacks on the main thread & time out a prepare
+    private Handler      mainHandler     = new Handler(Looper.getMainLooper());
+    private Runnable     timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onPrepareTimeout();
+        }
+    };
+
+    // scrub rate limiting: when the last scrub seek was sent and the newest one waiting
+    private long         lastScrubTime   = 0;
+    private int          pendingScrub    = NO_SEEK;
+    private Runnable     scrubRunnable   = new Runnable() {
+        @Override
+        public void run() {
+            sendPendingScrub();
+        }
+    };
+
+    // handler that sends commands to the player thread
+    private Handler      playerHandler;
 
     // private Listener instance
-    private Listener listener;
+    private Listener     listener;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // State published by the player thread
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private volatile int     mLastPosition    = 0;
+    private volatile int     mCurrentPosition = 0;
+    private volatile int     mTotalDuration   = 0;
+    private volatile int     mVideoWidth      = 0;
+    private volatile int     mVideoHeight     = 0;
+    private volatile float   mBufferPercent   = 0;
+    private volatile boolean mIsPlaying       = false;
+    private volatile boolean mIsSeeking       = false;
+    private volatile int     mLastSeekLatency = 0;
+    private volatile int     mAvgSeekLatency  = 0;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Player thread state
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // the actual media player, only ever touched on the player thread
+    private MediaPlayer  player           = null;
+    private boolean      isPlayerPrepared = false;
+    private boolean      hasPlayerSource  = false;
+    private int          playerGeneration = 0;
+
+    // the seek that's currently in flight (its start time) and the newest seek waiting for it
+    private long         seekStartTime    = 0;
+    private int          pendingSeek      = NO_SEEK;
+    private int          pendingSeekMode  = SEEK_PRECISE;
 
     /**
-     * Simplex constructor that sets all traditional MediaPlayer listeners and
+     * Simplex constructor that creates the actual media player on the player thread and
      * creates a new local instance of the SimplexMediaPlayer.Listener interface
      */
     SimplexMediaPlayer() {
 
-        setOnPreparedListener(this);
-        setOnCompletionListener(this);
-        setOnErrorListener(this);
-        setOnBufferingUpdateListener(this);
+        playerHandler = new Handler(getPlayerLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                handleCommand(msg);
+            }
+        };
+        playerHandler.sendEmptyMessage(MSG_CREATE);
 
         listener = new Listener() {
             @Override public void onPrepared() {}
@@ -42,13 +184,115 @@ public class SimplexMediaPlayer extends MediaPlayer implements
     }
 
     /**
-     * Method that plays the video from a certain given position
+     * Method that returns the looper of the player thread, starting the thread if needed
+     *
+     * @return the player thread looper
+     */
+    private static synchronized Looper getPlayerLooper() {
+        if (playerThread == null) {
+            playerThread = new HandlerThread("SimplexPlayer");
+            playerThread.start();
+        }
+        return playerThread.getLooper();
+    }
+
+    /**
+     * Method that returns the executor media players get released on, creating it if needed
+     *
+     * @return the release executor
+     */
+    private static synchronized ExecutorService getReleaseExecutor() {
+        if (releaseExecutor == null) {
+            releaseExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SimplexRelease");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return releaseExecutor;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Commands (main thread)
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that sets the surface holder the video will be displayed on. Only the latest
+     * display set is kept if the player thread hasn't caught up yet.
+     *
+     * @param holder a surface holder, or null to detach the current one
+     */
+    void setDisplay(SurfaceHolder holder) {
+        playerHandler.removeMessages(MSG_SET_DISPLAY);
+        playerHandler.obtainMessage(MSG_SET_DISPLAY, holder).sendToTarget();
+    }
+
+    /**
+     * Method that detaches the current display and waits until the player thread has done it,
+     * along with every command sent before (e.g. a pause or a stop). It's meant to be called
+     * when the surface gets destroyed, since once that callback returns the surface is gone and
+     * the actual media player must not render into it anymore. If the player thread is busy
+     * for longer than the detach timeout, it stops waiting.
+     */
+    void detachDisplay() {
+
+        setDisplay(null);
+
+        // nothing to wait for if already on the player thread
+        if (Looper.myLooper() == playerHandler.getLooper()) return;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean isPosted = playerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        if (!isPosted) return;
+
+        try {
+            latch.await(DETACH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method that sets the path or url of the media to play. Any error will be delivered
+     * through the Listener's "onError" method.
+     *
+     * @param path a file path or a remote url
+     */
+    void setDataSource(String path) {
+        playerHandler.obtainMessage(MSG_SET_SOURCE, mGeneration, 0, path).sendToTarget();
+    }
+
+    /**
+     * Method that starts preparing the current data source asynchronously. The result will be
+     * delivered through the Listener's "onPrepared" or "onError" methods, the latter also being
+     * called if preparing takes longer than the prepare timeout.
+     */
+    void prepareMediaAsync() {
+        cancelPrepareTimeout();
+        mPrepareState = PrepareState.PREPARING;
+        playerHandler.obtainMessage(MSG_PREPARE, mGeneration, 0).sendToTarget();
+        mainHandler.postDelayed(timeoutRunnable, mPrepareTimeout);
+    }
+
+    /**
+     * Method that plays the video from a certain given position. If the media player is not yet
+     * prepared, the position is just saved so it can be used once preparing finishes.
      *
      * @param position a custom position
      */
     void playFrom(int position) {
         setLastPosition(position);
-        playFromLastPosition();
+        if (isPrepared()) {
+            playFromLastPosition();
+        }
     }
 
     /**
@@ -73,11 +317,195 @@ public class SimplexMediaPlayer extends MediaPlayer implements
         seekTo(mLastPosition);
     }
 
+    /**
+     * Method that seeks to a position. A burst of seeks only results in the last one
+     * being performed.
+     *
+     * @param position position to seek to
+     */
+    private void seekTo(int position) {
+        cancelScrub();
+        sendSeek(position, SEEK_PRECISE);
+    }
+
+    /**
+     * Method that sends a seek to the player thread, replacing any seek still waiting there
+     *
+     * @param position position to seek to
+     * @param mode     either SEEK_PRECISE or SEEK_FAST
+     */
+    private void sendSeek(int position, int mode) {
+        mCurrentPosition = position;
+        playerHandler.removeMessages(MSG_SEEK);
+        playerHandler.obtainMessage(MSG_SEEK, position, mode).sendToTarget();
+    }
+
+    /**
+     * Method that seeks to a position while the user scrubs through the media. Scrub seeks
+     * are fast (to the closest sync frame, where available) and are sent at most once per
+     * average seek latency, so the decoder is never flooded; in between, only the newest
+     * position is kept.
+     *
+     * @param position position to scrub to
+     */
+    void scrubTo(int position) {
+
+        if (!isPrepared()) return;
+
+        pendingScrub = position;
+        long now = SystemClock.uptimeMillis();
+        long wait = lastScrubTime + getScrubInterval() - now;
+
+        if (wait <= 0) {
+            sendPendingScrub();
+        } else {
+            mainHandler.removeCallbacks(scrubRunnable);
+            mainHandler.postDelayed(scrubRunnable, wait);
+        }
+    }
+
+    /**
+     * Method that returns the current minimum interval between two scrub seeks
+     *
+     * @return an interval in milliseconds
+     */
+    private int getScrubInterval() {
+        return Math.max(MIN_SCRUB_INTERVAL, mAvgSeekLatency);
+    }
+
+    /**
+     * Method that sends the newest scrub position as a fast seek
+     */
+    private void sendPendingScrub() {
+        if (pendingScrub != NO_SEEK && isPrepared()) {
+            lastScrubTime = SystemClock.uptimeMillis();
+            sendSeek(pendingScrub, SEEK_FAST);
+        }
+        pendingScrub = NO_SEEK;
+    }
+
+    /**
+     * Method that drops any scrub position waiting to be sent
+     */
+    private void cancelScrub() {
+        mainHandler.removeCallbacks(scrubRunnable);
+        pendingScrub = NO_SEEK;
+    }
+
+    /**
+     * Method that starts playing. Only the latest of a series of start / pause commands
+     * is performed.
+     */
+    private void start() {
+        playerHandler.removeMessages(MSG_START);
+        playerHandler.removeMessages(MSG_PAUSE);
+        playerHandler.sendEmptyMessage(MSG_START);
+    }
+
+    /**
+     * Pause method that also saves the current position. Only the latest of a series of
+     * start / pause commands is performed.
+     */
+    void pause() {
+        if (isPrepared()) {
+            saveCurrentPos();
+            playerHandler.removeMessages(MSG_START);
+            playerHandler.removeMessages(MSG_PAUSE);
+            playerHandler.sendEmptyMessage(MSG_PAUSE);
+        }
+    }
+
+    /**
+     * Stop method that also saves the current position
+     */
+    void stop() {
+        if (isPrepared()) {
+            saveCurrentPos();
+            mPrepareState = PrepareState.STOPPED;
+            playerHandler.removeMessages(MSG_START);
+            playerHandler.removeMessages(MSG_PAUSE);
+            playerHandler.sendEmptyMessage(MSG_STOP);
+        }
+    }
+
+    /**
+     * Reset-all method. This also cancels any prepare that might be in progress and drops
+     * any command still pending for the previous media
+     */
+    void reset() {
+        cancelPrepareTimeout();
+        mGeneration++;
+        mPrepareState = PrepareState.IDLE;
+        mLastPosition = 0;
+        mCurrentPosition = 0;
+        mTotalDuration = 0;
+        mBufferPercent = 0;
+        mVideoWidth = 0;
+        mVideoHeight = 0;
+        mIsPlaying = false;
+        cancelScrub();
+        removePlaybackCommands();
+        playerHandler.sendEmptyMessage(MSG_RESET);
+    }
+
+    /**
+     * Release method that also cancels any pending prepare timeout. The media player can't
+     * be used after this
+     */
+    void release() {
+        release(null);
+    }
+
+    /**
+     * Release method that also cancels any pending prepare timeout. The media player can't
+     * be used after this. The actual release happens in the background, and the given
+     * callback is called on the main thread once it has finished.
+     *
+     * @param onReleased callback for when the release has finished, or null
+     */
+    void release(Runnable onReleased) {
+        cancelPrepareTimeout();
+        mGeneration++;
+        mPrepareState = PrepareState.IDLE;
+        mIsPlaying = false;
+        cancelScrub();
+        removePlaybackCommands();
+        playerHandler.obtainMessage(MSG_RELEASE, onReleased).sendToTarget();
+    }
+
+    /**
+     * Method that sets the media player to start when this one completes. Needs Jelly Bean.
+     *
+     * @param next the next media player, or null to remove it
+     */
+    void setNextMediaPlayer(SimplexMediaPlayer next) {
+        playerHandler.removeMessages(MSG_SET_NEXT);
+        playerHandler.obtainMessage(MSG_SET_NEXT, next).sendToTarget();
+    }
+
+    /**
+     * Method that drops all pending commands that only make sense for the current media
+     */
+    private void removePlaybackCommands() {
+        playerHandler.removeMessages(MSG_SET_SOURCE);
+        playerHandler.removeMessages(MSG_PREPARE);
+        playerHandler.removeMessages(MSG_SEEK);
+        playerHandler.removeMessages(MSG_START);
+        playerHandler.removeMessages(MSG_PAUSE);
+        playerHandler.removeMessages(MSG_STOP);
+        playerHandler.removeMessages(MSG_SET_NEXT);
+        playerHandler.removeMessages(MSG_POLL);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Setters & getters (main thread)
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Saves the current position
      */
     private void saveCurrentPos() {
-        setLastPosition(getCurrentPosition());
+        setLastPosition(mCurrentPosition);
     }
 
     /**
@@ -98,6 +526,15 @@ public class SimplexMediaPlayer extends MediaPlayer implements
         return mLastPosition;
     }
 
+    /**
+     * Getter for the current position, as last published by the player thread
+     *
+     * @return the current position
+     */
+    int getCurrentPosition() {
+        return mCurrentPosition;
+    }
+
     /**
      * Getter for the total duration
      *
@@ -107,6 +544,60 @@ public class SimplexMediaPlayer extends MediaPlayer implements
         return mTotalDuration;
     }
 
+    /**
+     * Getter for the video width
+     *
+     * @return the width of the video, or 0 if there's no video track
+     */
+    int getVideoWidth() {
+        return mVideoWidth;
+    }
+
+    /**
+     * Getter for the video height
+     *
+     * @return the height of the video, or 0 if there's no video track
+     */
+    int getVideoHeight() {
+        return mVideoHeight;
+    }
+
+    /**
+     * Method that checks whether the media player is playing
+     *
+     * @return true if playing, false otherwise
+     */
+    boolean isPlaying() {
+        return mIsPlaying;
+    }
+
+    /**
+     * Method that checks whether there is a seek in flight in the media player
+     *
+     * @return true if seeking, false otherwise
+     */
+    boolean isSeeking() {
+        return mIsSeeking;
+    }
+
+    /**
+     * Getter for the time the last seek took to complete
+     *
+     * @return the last seek latency, in milliseconds
+     */
+    int getLastSeekLatency() {
+        return mLastSeekLatency;
+    }
+
+    /**
+     * Getter for the average time seeks take to complete
+     *
+     * @return the average seek latency, in milliseconds, or 0 if no seek completed yet
+     */
+    int getAverageSeekLatency() {
+        return mAvgSeekLatency;
+    }
+
     /**
      * Getter for the buffer percent
      *
@@ -116,6 +607,52 @@ public class SimplexMediaPlayer extends MediaPlayer implements
         return mBufferPercent;
     }
 
+    /**
+     * Getter for the current preparation state
+     *
+     * @return the current prepare state
+     */
+    PrepareState getPrepareState() {
+        return mPrepareState;
+    }
+
+    /**
+     * Method that checks whether the media player is currently preparing
+     *
+     * @return true if preparing, false otherwise
+     */
+    boolean isPreparing() {
+        return mPrepareState == PrepareState.PREPARING;
+    }
+
+    /**
+     * Method that checks whether the media player has been stopped and needs to be prepared
+     * again before it can play
+     *
+     * @return true if stopped, false otherwise
+     */
+    boolean isStopped() {
+        return mPrepareState == PrepareState.STOPPED;
+    }
+
+    /**
+     * Method that checks whether the media player is prepared
+     *
+     * @return true if prepared, false otherwise
+     */
+    boolean isPrepared() {
+        return mPrepareState == PrepareState.PREPARED;
+    }
+
+    /**
+     * Setter for the prepare timeout
+     *
+     * @param timeout new timeout, in milliseconds
+     */
+    void setPrepareTimeout(long timeout) {
+        mPrepareTimeout = timeout > 0 ? timeout : DEFAULT_PREPARE_TIMEOUT;
+    }
+
     /**
      * Sets the buffer at 100% (useful for offline files)
      */
@@ -131,49 +668,261 @@ public class SimplexMediaPlayer extends MediaPlayer implements
     }
 
     /**
-     * Overridden pause method that also saves the current position
+     * Setter for the local listener instance
      *
-     * @throws IllegalStateException
+     * @param listener a new instance of the SimplexVideoView.Listener class
      */
-    @Override
-    public void pause() throws IllegalStateException {
-        saveCurrentPos();
-        super.pause();
+    void setListener(Listener listener) {
+        this.listener = listener != null ? listener : this.listener;
+    }
+
+    /**
+     * Method that removes any pending prepare timeout
+     */
+    private void cancelPrepareTimeout() {
+        mainHandler.removeCallbacks(timeoutRunnable);
     }
 
     /**
-     * Overridden stom method that also saves the current position
+     * Called when the prepare timeout expires before the media player got prepared. The current
+     * prepare is cancelled and the error is reported further.
+     */
+    private void onPrepareTimeout() {
+        if (isPreparing()) {
+            reset();
+            listener.onError();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Command handling (player thread)
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that performs a command on the player thread
      *
-     * @throws IllegalStateException
+     * @param msg the command message
      */
-    @Override
-    public void stop() throws IllegalStateException {
-        saveCurrentPos();
-        super.stop();
+    private void handleCommand(Message msg) {
+
+        // create the actual media player
+        if (msg.what == MSG_CREATE) {
+            player = new MediaPlayer();
+            player.setOnPreparedListener(this);
+            player.setOnCompletionListener(this);
+            player.setOnErrorListener(this);
+            player.setOnBufferingUpdateListener(this);
+            player.setOnInfoListener(this);
+            player.setOnSeekCompleteListener(this);
+            return;
+        }
+
+        // after a release, nothing else can be done
+        if (player == null) {
+            if (msg.what == MSG_RELEASE && msg.obj != null) {
+                mainHandler.post((Runnable) msg.obj);
+            }
+            return;
+        }
+
+        try {
+            switch (msg.what) {
+                case MSG_SET_DISPLAY: {
+                    player.setDisplay((SurfaceHolder) msg.obj);
+                    break;
+                }
+                case MSG_SET_SOURCE: {
+                    playerGeneration = msg.arg1;
+                    try {
+                        player.setDataSource((String) msg.obj);
+                        hasPlayerSource = true;
+                    } catch (IOException | IllegalArgumentException | SecurityException e) {
+                        e.printStackTrace();
+                        postError(playerGeneration);
+                    }
+                    break;
+                }
+                case MSG_PREPARE: {
+                    playerGeneration = msg.arg1;
+                    if (hasPlayerSource && !isPlayerPrepared) {
+                        player.prepareAsync();
+                    } else {
+                        postError(playerGeneration);
+                    }
+                    break;
+                }
+                case MSG_SEEK: {
+                    if (isPlayerPrepared) {
+                        scheduleSeek(msg.arg1, msg.arg2);
+                    }
+                    break;
+                }
+                case MSG_START: {
+                    if (isPlayerPrepared) {
+                        player.start();
+                        mIsPlaying = true;
+                        schedulePositionPoll();
+                    }
+                    break;
+                }
+                case MSG_PAUSE: {
+                    if (isPlayerPrepared) {
+                        player.pause();
+                        publishPausedPosition();
+                    }
+                    break;
+                }
+                case MSG_STOP: {
+                    if (isPlayerPrepared) {
+                        publishPausedPosition();
+                        player.stop();
+                        isPlayerPrepared = false;
+                        clearSeeks();
+                    }
+                    break;
+                }
+                case MSG_RESET: {
+                    playerHandler.removeMessages(MSG_POLL);
+                    clearSeeks();
+                    player.reset();
+                    isPlayerPrepared = false;
+                    hasPlayerSource = false;
+                    break;
+                }
+                case MSG_RELEASE: {
+                    playerHandler.removeMessages(MSG_POLL);
+                    clearSeeks();
+                    releaseInBackground(player, (Runnable) msg.obj);
+                    player = null;
+                    isPlayerPrepared = false;
+                    hasPlayerSource = false;
+                    break;
+                }
+                case MSG_SET_NEXT: {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                        SimplexMediaPlayer next = (SimplexMediaPlayer) msg.obj;
+                        player.setNextMediaPlayer(next != null ? next.player : null);
+                    }
+                    break;
+                }
+                case MSG_POLL: {
+                    if (isPlayerPrepared && mIsPlaying) {
+                        // while seeking, keep publishing the seek target
+                        if (!mIsSeeking) {
+                            mCurrentPosition = player.getCurrentPosition();
+                        }
+                        schedulePositionPoll();
+                    }
+                    break;
+                }
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Overridden reset-all method
+     * Method that hands the actual media player over to the release executor, so the player
+     * thread can carry on with other commands while the codecs are being torn down
+     *
+     * @param mp         the media player to release
+     * @param onReleased callback to call on the main thread once released, or null
      */
-    @Override
-    public void reset() {
-        mLastPosition = 0;
-        mTotalDuration = 0;
-        mBufferPercent = 0;
-        super.reset();
+    private void releaseInBackground(final MediaPlayer mp, final Runnable onReleased) {
+
+        // this player won't report anything anymore
+        mp.setOnPreparedListener(null);
+        mp.setOnCompletionListener(null);
+        mp.setOnErrorListener(null);
+        mp.setOnBufferingUpdateListener(null);
+        mp.setOnInfoListener(null);
+        mp.setOnSeekCompleteListener(null);
+
+        getReleaseExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mp.release();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                if (onReleased != null) {
+                    mainHandler.post(onReleased);
+                }
+            }
+        });
     }
 
     /**
-     * Setter for the local listener instance
+     * Method that performs a seek if there's none in flight; otherwise the target just
+     * replaces any seek waiting for the current one to complete
      *
-     * @param listener a new instance of the SimplexVideoView.Listener class
+     * @param position position to seek to
+     * @param mode     either SEEK_PRECISE or SEEK_FAST
      */
-    void setListener(Listener listener) {
-        this.listener = listener != null ? listener : this.listener;
+    private void scheduleSeek(int position, int mode) {
+        if (mIsSeeking) {
+            pendingSeek = position;
+            pendingSeekMode = mode;
+        } else {
+            mIsSeeking = true;
+            seekStartTime = SystemClock.uptimeMillis();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                player.seekTo((long) position, mode == SEEK_FAST ?
+                        MediaPlayer.SEEK_CLOSEST_SYNC :
+                        MediaPlayer.SEEK_CLOSEST);
+            } else {
+                player.seekTo(position);
+            }
+        }
+    }
+
+    /**
+     * Method that forgets about the seek in flight and any seek waiting for it
+     */
+    private void clearSeeks() {
+        mIsSeeking = false;
+        pendingSeek = NO_SEEK;
+    }
+
+    /**
+     * Method that schedules the next publishing of the current position
+     */
+    private void schedulePositionPoll() {
+        playerHandler.removeMessages(MSG_POLL);
+        playerHandler.sendEmptyMessageDelayed(MSG_POLL, POSITION_POLL_INTERVAL);
+    }
+
+    /**
+     * Method that publishes the exact position the player stopped at
+     */
+    private void publishPausedPosition() {
+        playerHandler.removeMessages(MSG_POLL);
+        mIsPlaying = false;
+        mCurrentPosition = player.getCurrentPosition();
+        mLastPosition = mCurrentPosition;
+    }
+
+    /**
+     * Method that delivers an error for a certain media generation on the main thread
+     *
+     * @param generation the media generation the error belongs to
+     */
+    private void postError(final int generation) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    cancelPrepareTimeout();
+                    mPrepareState = PrepareState.IDLE;
+                    listener.onError();
+                }
+            }
+        });
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
-    // Implement methods from MediaPlayer interface
+    // Implement methods from MediaPlayer interface (player thread)
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
@@ -194,7 +943,20 @@ public class SimplexMediaPlayer extends MediaPlayer implements
      */
     @Override
     public void onCompletion(MediaPlayer mp) {
-        listener.onCompletion();
+
+        playerHandler.removeMessages(MSG_POLL);
+        mIsPlaying = false;
+        mCurrentPosition = mTotalDuration;
+
+        final int generation = playerGeneration;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == mGeneration) {
+                    listener.onCompletion();
+                }
+            }
+        });
     }
 
     /**
@@ -207,7 +969,10 @@ public class SimplexMediaPlayer extends MediaPlayer implements
      */
     @Override
     public boolean onError(MediaPlayer mp, int what, int extra) {
-        listener.onError();
+        playerHandler.removeMessages(MSG_POLL);
+        mIsPlaying = false;
+        isPlayerPrepared = false;
+        postError(playerGeneration);
         return false;
     }
 
@@ -218,8 +983,78 @@ public class SimplexMediaPlayer extends MediaPlayer implements
      */
     @Override
     public void onPrepared(MediaPlayer mp) {
+
+        isPlayerPrepared = true;
         mTotalDuration = mp.getDuration();
-        listener.onPrepared();
+        mVideoWidth = mp.getVideoWidth();
+        mVideoHeight = mp.getVideoHeight();
+
+        final int generation = playerGeneration;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                // ignore a stale prepare that has been cancelled in the meantime
+                if (generation != mGeneration || !isPreparing()) return;
+
+                cancelPrepareTimeout();
+                mPrepareState = PrepareState.PREPARED;
+                listener.onPrepared();
+            }
+        });
+    }
+
+    /**
+     * Called when the media player has completed a seek. The seek latency is recorded and
+     * the newest seek that was waiting, if any, is performed
+     *
+     * @param mp current media player
+     */
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+
+        // a seek that's been dropped by a stop or reset
+        if (!mIsSeeking) return;
+
+        int latency = (int) (SystemClock.uptimeMillis() - seekStartTime);
+        mLastSeekLatency = latency;
+        mAvgSeekLatency = mAvgSeekLatency == 0 ?
+                latency :
+                (int) (SEEK_LATENCY_WEIGHT * latency + (1 - SEEK_LATENCY_WEIGHT) * mAvgSeekLatency);
+
+        mIsSeeking = false;
+
+        if (pendingSeek != NO_SEEK && isPlayerPrepared) {
+            int position = pendingSeek;
+            pendingSeek = NO_SEEK;
+            try {
+                scheduleSeek(position, pendingSeekMode);
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            }
+        } else {
+            pendingSeek = NO_SEEK;
+        }
+    }
+
+    /**
+     * Called when the media player has some info; used to find out when this player has been
+     * started by the platform as the next media player of another one
+     *
+     * @param mp    current media player
+     * @param what  what info
+     * @param extra extra info
+     * @return      whether the info was handled
+     */
+    @Override
+    public boolean onInfo(MediaPlayer mp, int what, int extra) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN &&
+                what == MediaPlayer.MEDIA_INFO_STARTED_AS_NEXT) {
+            mIsPlaying = true;
+            schedulePositionPoll();
+            return true;
+        }
+        return false;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,60 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.os.SystemClock;
+
+/**
+ * Class that counts the view mutations a controller performs (i.e. updates it pushes to its
+ * views) over one-second windows, so the rate can be checked while profiling
+ */
+class SimplexMutationCounter {
+
+    // the window mutations are counted over, in ms
+    private static final long   WINDOW      = 1000;
+
+    // start of the current window, mutations counted in it, and in the last whole one
+    private long                windowStart = 0;
+    private int                 count       = 0;
+    private int                 rate        = 0;
+
+    /**
+     * Method that counts mutations towards the current window
+     *
+     * @param mutations the number of mutations
+     */
+    void count (int mutations) {
+        if (mutations > 0) {
+            roll(SystemClock.uptimeMillis());
+            count += mutations;
+        }
+    }
+
+    /**
+     * Method that returns how many mutations were counted in the last whole second
+     *
+     * @return the number of mutations per second
+     */
+    int getPerSecond () {
+        roll(SystemClock.uptimeMillis());
+        return rate;
+    }
+
+    /**
+     * Method that starts a new window, if the current one is over, keeping the count of the
+     * one that's over (or 0, if more than a whole window passed since)
+     *
+     * @param now the current uptime, in ms
+     */
+    private void roll (long now) {
+
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW) return;
+
+        rate = elapsed < 2 * WINDOW ? count : 0;
+        count = 0;
+        windowStart = now;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+/**
+ * Class that holds a snapshot of everything the controller displays, in the precision it's
+ * displayed in: the playback & buffer fractions rounded to whole pixels of the progress bar,
+ * and the times to whole seconds.
+ * The controller compares every tick with the last snapshot it applied and only updates the
+ * subviews whose values changed. Snapshots are filled in place, so a controller only ever
+ * needs two of them, the applied one & a spare it swaps with, and ticks allocate nothing,
+ * whether they change what's displayed or not.
+ */
+final class SimplexRenderModel {
+
+    // the playback state, shown by the play button, or null while the snapshot is empty
+    Simplex.PlaybackState state         = null;
+
+    // the played & buffered fractions of the video, rounded to pixels of the progress bar
+    float                 playback      = 0;
+    float                 buffer        = 0;
+
+    // the current & total time, in whole seconds
+    long                  currentSecond = 0;
+    long                  totalSecond   = 0;
+
+    /**
+     * Method that fills the snapshot with the values to display, rounded to the precision
+     * they're displayed in
+     *
+     * @param state         the playback state
+     * @param playback      the fraction of the video that's been played
+     * @param buffer        the fraction of the video that's been buffered
+     * @param currentTime   the current time, in ms
+     * @param totalTime     the total time, in ms
+     * @param trackWidth    the width of the progress bar, in pixels
+     */
+    void set (Simplex.PlaybackState state, float playback, float buffer, long currentTime,
+              long totalTime, int trackWidth) {
+        this.state = state;
+        this.playback = round(playback, trackWidth);
+        this.buffer = round(buffer, trackWidth);
+        this.currentSecond = currentTime / 1000;
+        this.totalSecond = totalTime / 1000;
+    }
+
+    /**
+     * Method that checks whether the snapshot has been filled yet, i.e. whether anything
+     * has been displayed
+     *
+     * @return true if it's empty, false otherwise
+     */
+    boolean isEmpty () {
+        return state == null;
+    }
+
+    /**
+     * Method that checks whether this snapshot displays the same as one filled with some
+     * values would, without filling one
+     *
+     * @param state         the playback state
+     * @param playback      the fraction of the video that's been played
+     * @param buffer        the fraction of the video that's been buffered
+     * @param currentTime   the current time, in ms
+     * @param totalTime     the total time, in ms
+     * @param trackWidth    the width of the progress bar, in pixels
+     * @return              true if they display the same, false otherwise
+     */
+    boolean matches (Simplex.PlaybackState state, float playback, float buffer, long currentTime,
+                     long totalTime, int trackWidth) {
+        return this.state == state &&
+                this.playback == round(playback, trackWidth) &&
+                this.buffer == round(buffer, trackWidth) &&
+                this.currentSecond == currentTime / 1000 &&
+                this.totalSecond == totalTime / 1000;
+    }
+
+    /**
+     * Method that rounds a fraction of the progress bar to whole pixels
+     *
+     * @param fraction      the fraction
+     * @param trackWidth    the width of the progress bar, in pixels, or 0 if it's not known
+     * @return              the rounded fraction
+     */
+    private static float round (float fraction, int trackWidth) {
+        if (Float.isNaN(fraction)) return 0;
+        return trackWidth > 0 ? Math.round(fraction * trackWidth) / (float) trackWidth : fraction;
+    }
+}
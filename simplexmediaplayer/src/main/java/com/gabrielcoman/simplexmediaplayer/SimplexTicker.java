@@ -0,0 +1,147 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Class that calls its listener on the main thread, at a rate the listener decides on every
+ * tick, for as long as it's running. Ticks are aligned to the display's frames (through the
+ * Choreographer) where that's available, so UI updates never land in the middle of one.
+ * It can also tick just once, e.g. to bring the UI in line with a new state while it's stopped.
+ */
+class SimplexTicker {
+
+    // delay that makes the next tick happen on the next frame
+    static final long           EVERY_FRAME     = 0;
+
+    // the two ways ticks get scheduled: the Choreographer from Jelly Bean on, a handler before
+    private Choreographer.FrameCallback frameCallback = null;
+    private Handler             handler         = null;
+    private Runnable            tickRunnable    = null;
+
+    // whether the ticker is running & whether a tick is scheduled
+    private boolean             isRunning       = false;
+    private boolean             isScheduled     = false;
+
+    // listener
+    private Listener            listener;
+
+    /**
+     * Constructor with the listener that gets called on every tick
+     *
+     * @param listener a listener instance
+     */
+    SimplexTicker (Listener listener) {
+        this.listener = listener;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    tick();
+                }
+            };
+        } else {
+            handler = new Handler(Looper.getMainLooper());
+            tickRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            };
+        }
+    }
+
+    /**
+     * Method that starts ticking, from the next frame on, if it's not already running
+     */
+    void start () {
+        if (!isRunning) {
+            isRunning = true;
+            schedule(EVERY_FRAME);
+        }
+    }
+
+    /**
+     * Method that stops ticking
+     */
+    void stop () {
+        isRunning = false;
+        cancel();
+    }
+
+    /**
+     * Method that makes the ticker tick on the next frame, whether it's running or not
+     */
+    void tickOnce () {
+        schedule(EVERY_FRAME);
+    }
+
+    /**
+     * Method called on every tick; it calls the listener and, if the ticker's still running,
+     * schedules the next tick as far ahead as the listener asks for
+     */
+    private void tick () {
+
+        isScheduled = false;
+        long delay = listener.didTick();
+
+        if (isRunning && !isScheduled) {
+            schedule(delay);
+        }
+    }
+
+    /**
+     * Method that schedules the next tick, replacing any tick that was scheduled before
+     *
+     * @param delay the delay of the tick in ms, or EVERY_FRAME for the next frame
+     */
+    private void schedule (long delay) {
+
+        cancel();
+
+        if (frameCallback != null) {
+            Choreographer.getInstance().postFrameCallbackDelayed(frameCallback, delay);
+        } else {
+            // roughly a frame, the same as the choreographer would wait
+            handler.postDelayed(tickRunnable, Math.max(delay, 16));
+        }
+
+        isScheduled = true;
+    }
+
+    /**
+     * Method that cancels the scheduled tick, if there is one
+     */
+    private void cancel () {
+
+        if (!isScheduled) return;
+
+        if (frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        } else {
+            handler.removeCallbacks(tickRunnable);
+        }
+
+        isScheduled = false;
+    }
+
+    /**
+     * Listener that gets called on every tick
+     */
+    interface Listener {
+
+        /**
+         * Called on every tick, on the main thread
+         *
+         * @return the delay until the next tick in ms, or EVERY_FRAME for the next frame
+         */
+        long didTick ();
+    }
+}
@@ -184,6 +184,9 @@ public class SimplexVideoView extends VideoView implements
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
 
+        // the surface is no longer available
+        surfaceCreated = false;
+
         // call to the listener
         listener.videoViewDestroyed(holder);
     }
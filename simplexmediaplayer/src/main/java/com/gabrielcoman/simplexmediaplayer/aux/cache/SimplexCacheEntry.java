@@ -0,0 +1,506 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+
+/**
+ * Class that represents a single media in the cache, stored sparsely: its data file has the
+ * full length of the media, but only some of its fixed-size blocks might have been downloaded.
+ * Which blocks are present is kept in a bitmap, persisted in an index file next to the data,
+ * so that a partially downloaded media can be resumed or seeked in after a restart without
+ * downloading anything it already has.
+ */
+public class SimplexCacheEntry {
+
+    // index file format
+    private static final int    INDEX_MAGIC   = 0x53584331;
+    private static final int    INDEX_VERSION = 1;
+
+    // number of newly cached blocks after which the index gets written, even while the
+    // entry is in use, so a download can be resumed after the process dies
+    private static final int    PERSIST_INTERVAL = 16;
+
+    // size of the regions at the start & end of the media (where the "moov" atom with all
+    // the media headers lives) that get memory-mapped, as the player reads them over and
+    // over through many small range requests
+    private static final int    HOT_REGION_SIZE  = 256 * 1024;
+
+    // the cache key, the data & index files, and the block size of the entry
+    private String              key;
+    private File                dataFile;
+    private File                indexFile;
+    private int                 blockSize;
+
+    // the total length (-1 while not known yet) & content type of the media
+    private long                length        = -1;
+    private String              contentType   = null;
+
+    // blocks that are fully present in the data file
+    private BitSet              blocks        = new BitSet();
+
+    // the data file, opened while the entry is in use, & the number of users
+    private RandomAccessFile    dataAccess    = null;
+    private FileChannel         dataChannel   = null;
+    private int                 users         = 0;
+
+    // memory-mapped head & tail regions, while the entry is in use & they're fully cached
+    private MappedByteBuffer    headMap       = null;
+    private MappedByteBuffer    tailMap       = null;
+
+    // whether the bitmap has changed since the index was last written, and by how many blocks
+    private boolean             isDirty       = false;
+    private int                 dirtyBlocks   = 0;
+
+    /**
+     * Constructor with the cache key, the cache directory and the block size
+     *
+     * @param directory the cache directory
+     * @param key       the cache key of the media
+     * @param blockSize the block size, in bytes
+     */
+    SimplexCacheEntry (File directory, String key, int blockSize) {
+        this.key = key;
+        this.dataFile = new File(directory, key);
+        this.indexFile = new File(directory, key + SimplexMediaCache.INDEX_SUFFIX);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Method that loads an entry from its index file
+     *
+     * @param directory     the cache directory
+     * @param key           the cache key of the media
+     * @return              the entry
+     * @throws IOException  if the index can't be read, or the data file is gone
+     */
+    static SimplexCacheEntry load (File directory, String key) throws IOException {
+
+        DataInputStream in = new DataInputStream(new FileInputStream(new File(directory, key + SimplexMediaCache.INDEX_SUFFIX)));
+
+        try {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("Invalid cache index for " + key);
+            }
+
+            SimplexCacheEntry entry = new SimplexCacheEntry(directory, key, in.readInt());
+            entry.length = in.readLong();
+            entry.contentType = in.readBoolean() ? in.readUTF() : null;
+
+            // one bit per block, eight blocks per byte
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 8) {
+                int bits = in.readUnsignedByte();
+                for (int bit = 0; bit < 8; bit++) {
+                    if ((bits & (1 << bit)) != 0) entry.blocks.set(i + bit);
+                }
+            }
+
+            if (!entry.dataFile.exists()) {
+                throw new IOException("Missing cache data for " + key);
+            }
+
+            return entry;
+        } finally {
+            in.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Usage
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that marks the entry as being used, opening its data file the first time
+     *
+     * @throws IOException if the data file can't be opened
+     */
+    synchronized void retain () throws IOException {
+        if (users == 0) {
+            dataAccess = new RandomAccessFile(dataFile, "rw");
+            dataChannel = dataAccess.getChannel();
+        }
+        users++;
+    }
+
+    /**
+     * Method that marks the entry as no longer used by someone; the last user closes the data
+     * file and writes the index
+     */
+    synchronized void release () {
+
+        if (users == 0) return;
+        users--;
+
+        if (users == 0) {
+            try {
+                dataAccess.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            dataAccess = null;
+            dataChannel = null;
+            headMap = null;
+            tailMap = null;
+            persist();
+        }
+    }
+
+    /**
+     * Method that checks whether the entry is being used
+     *
+     * @return true or false
+     */
+    synchronized boolean isInUse () {
+        return users > 0;
+    }
+
+    /**
+     * Method that deletes the data & index files of an entry that's no longer used
+     */
+    synchronized void delete () {
+        //noinspection ResultOfMethodCallIgnored
+        dataFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        indexFile.delete();
+        blocks.clear();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Metadata
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that sets the total length and content type of the media, once known. If the
+     * length is different from a previously known one, the media has changed, and all cached
+     * blocks are dropped.
+     *
+     * @param length        the total length in bytes
+     * @param contentType   the content type, or null
+     */
+    public synchronized void setMetadata (long length, String contentType) {
+
+        if (this.length >= 0 && this.length != length) {
+            blocks.clear();
+            headMap = null;
+            tailMap = null;
+        }
+
+        this.length = length;
+        this.contentType = contentType;
+        isDirty = true;
+    }
+
+    /**
+     * Getter for the total length of the media
+     *
+     * @return the length in bytes, or -1 if not known yet
+     */
+    public synchronized long getLength () {
+        return length;
+    }
+
+    /**
+     * Getter for the content type of the media
+     *
+     * @return the content type, or null if not known
+     */
+    public synchronized String getContentType () {
+        return contentType;
+    }
+
+    /**
+     * Getter for the block size of the entry
+     *
+     * @return the block size in bytes
+     */
+    public int getBlockSize () {
+        return blockSize;
+    }
+
+    /**
+     * Getter for the data file of the entry
+     *
+     * @return the data file
+     */
+    public File getDataFile () {
+        return dataFile;
+    }
+
+    /**
+     * Getter for the cache key of the entry
+     *
+     * @return the cache key
+     */
+    public String getKey () {
+        return key;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Blocks
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that checks whether the byte at a position is cached
+     *
+     * @param position  a position in the media
+     * @return          true if its block is present
+     */
+    public synchronized boolean isCached (long position) {
+        return blocks.get((int) (position / blockSize));
+    }
+
+    /**
+     * Method that finds the end of the run of blocks, starting with the one holding a
+     * position, that are all either cached or missing, like that block
+     *
+     * @param position  a position in the media
+     * @return          the (exclusive) end of the run, never past the end of the media
+     */
+    public synchronized long findRunEnd (long position) {
+
+        int block = (int) (position / blockSize);
+        int end = blocks.get(block) ? blocks.nextClearBit(block) : blocks.nextSetBit(block);
+
+        long runEnd = end < 0 ? Long.MAX_VALUE : (long) end * blockSize;
+        return length >= 0 ? Math.min(runEnd, length) : runEnd;
+    }
+
+    /**
+     * Method that checks whether every block of the media is cached
+     *
+     * @return true or false
+     */
+    public synchronized boolean isComplete () {
+        return length >= 0 && blocks.cardinality() == blockCount();
+    }
+
+    /**
+     * Method that returns the number of bytes the cached blocks take on disk
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getCachedSize () {
+        return (long) blocks.cardinality() * blockSize;
+    }
+
+    /**
+     * Method that sends cached data to a channel without copying it through the heap: ranges
+     * in the head or tail regions are written from their memory-mapped copy, while everything
+     * else is transferred by the file channel (a "sendfile" for sockets)
+     *
+     * @param position      position in the media to send from
+     * @param count         maximum number of bytes to send
+     * @param target        the channel to send to
+     * @return              number of bytes sent
+     * @throws IOException  if the data file can't be read or the target is gone
+     */
+    public long transferTo (long position, long count, WritableByteChannel target) throws IOException {
+
+        ByteBuffer mapped = getMappedRange(position, position + count);
+        if (mapped != null) {
+            long sent = 0;
+            while (mapped.hasRemaining()) {
+                sent += target.write(mapped);
+            }
+            return sent;
+        }
+
+        long sent = getChannel().transferTo(position, count, target);
+        if (sent <= 0 && position >= getChannel().size()) {
+            throw new IOException("Cached data is shorter than expected");
+        }
+        return sent;
+    }
+
+    /**
+     * Method that returns a range of the media from the memory-mapped head or tail regions,
+     * mapping them the first time they're needed once all their blocks are cached
+     *
+     * @param start         the first byte of the range
+     * @param end           the (exclusive) last byte of the range
+     * @return              a buffer with the range, or null if it's not in a mapped region
+     * @throws IOException  if a region can't be mapped
+     */
+    private synchronized ByteBuffer getMappedRange (long start, long end) throws IOException {
+
+        if (length <= 0 || dataChannel == null) return null;
+
+        long size = Math.min(HOT_REGION_SIZE, length);
+        long regionStart;
+        MappedByteBuffer region;
+
+        if (end <= size) {
+            if (headMap == null && isRangeCached(0, size)) {
+                headMap = dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            regionStart = 0;
+            region = headMap;
+        } else if (start >= length - size) {
+            if (tailMap == null && isRangeCached(length - size, length)) {
+                tailMap = dataChannel.map(FileChannel.MapMode.READ_ONLY, length - size, size);
+            }
+            regionStart = length - size;
+            region = tailMap;
+        } else {
+            return null;
+        }
+
+        if (region == null) return null;
+
+        // a view of the range, so connections don't share a position
+        ByteBuffer range = region.duplicate();
+        range.position((int) (start - regionStart));
+        range.limit((int) (end - regionStart));
+        return range;
+    }
+
+    /**
+     * Method that checks whether every block between two positions is cached
+     *
+     * @param start the first byte
+     * @param end   the (exclusive) last byte
+     * @return      true or false
+     */
+    private boolean isRangeCached (long start, long end) {
+        int first = (int) (start / blockSize);
+        int last = (int) ((end - 1) / blockSize);
+        return blocks.nextClearBit(first) > last;
+    }
+
+    /**
+     * Method that writes downloaded data to the data file. Blocks only get marked as cached
+     * once fully written, so writes should start on a block boundary and be contiguous.
+     *
+     * @param buffer        the downloaded data
+     * @param count         number of bytes in the buffer
+     * @param position      position of the data in the media
+     * @param runStart      position (on a block boundary) the current download started at
+     * @throws IOException  if the data file can't be written
+     */
+    public void write (byte[] buffer, int count, long position, long runStart) throws IOException {
+
+        FileChannel channel = getChannel();
+
+        // positional writes are safe from several downloads at the same time
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+        long offset = position;
+        while (data.hasRemaining()) {
+            offset += channel.write(data, offset);
+        }
+
+        markCached(runStart, position + count);
+    }
+
+    /**
+     * Getter for the channel of the open data file
+     *
+     * @return              the channel
+     * @throws IOException  if the entry is not in use
+     */
+    private synchronized FileChannel getChannel () throws IOException {
+        if (dataChannel == null) {
+            throw new IOException("Cache entry is not open");
+        }
+        return dataChannel;
+    }
+
+    /**
+     * Method that marks all blocks that are fully between two positions as cached. The last
+     * block of the media is complete when the data reaches the end of the media.
+     *
+     * @param start position (on a block boundary) the data starts at
+     * @param end   (exclusive) position the data ends at
+     */
+    private synchronized void markCached (long start, long end) {
+
+        int first = (int) (start / blockSize);
+        int last = (int) (end / blockSize);
+        if (length >= 0 && end >= length) {
+            last = blockCount();
+        }
+
+        if (last > first && blocks.nextClearBit(first) < last) {
+            blocks.set(first, last);
+            isDirty = true;
+            dirtyBlocks += last - first;
+        }
+
+        if (dirtyBlocks >= PERSIST_INTERVAL) {
+            persist();
+        }
+    }
+
+    /**
+     * Method that returns the number of blocks of the media
+     *
+     * @return the number of blocks, or 0 if the length is not known
+     */
+    private int blockCount () {
+        return length > 0 ? (int) ((length + blockSize - 1) / blockSize) : 0;
+    }
+
+    /**
+     * Method that writes the index file, if the bitmap has changed. It's written to a temporary
+     * file first, so a crash never leaves a broken index behind.
+     */
+    synchronized void persist () {
+
+        if (!isDirty) return;
+
+        File tempFile = new File(indexFile.getPath() + SimplexMediaCache.TEMP_SUFFIX);
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(blockSize);
+                out.writeLong(length);
+                out.writeBoolean(contentType != null);
+                if (contentType != null) {
+                    out.writeUTF(contentType);
+                }
+                int count = blocks.length();
+                out.writeInt(count);
+                for (int i = 0; i < count; i += 8) {
+                    int bits = 0;
+                    for (int bit = 0; bit < 8; bit++) {
+                        if (blocks.get(i + bit)) bits |= 1 << bit;
+                    }
+                    out.writeByte(bits);
+                }
+            } finally {
+                out.close();
+            }
+
+            if (tempFile.renameTo(indexFile)) {
+                isDirty = false;
+                dirtyBlocks = 0;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method that marks the entry as recently used, in a way that survives restarts
+     */
+    void touch () {
+        //noinspection ResultOfMethodCallIgnored
+        indexFile.setLastModified(System.currentTimeMillis());
+    }
+}
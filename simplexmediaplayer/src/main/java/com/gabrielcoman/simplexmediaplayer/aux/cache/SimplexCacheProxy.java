@@ -0,0 +1,854 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexBandwidthEstimator;
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexDownloader;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that runs a small HTTP server on the loopback interface, that the media player can be
+ * pointed to instead of a remote media url.
+ * Every request (including range requests, which the player makes when seeking) is answered
+ * from the blocks of the media that are already cached, while the gaps between them are
+ * downloaded, written to the cache and passed through to the player. This way no byte of a
+ * media has to be downloaded twice, however many times it's played or seeked in.
+ * Cached data is sent to the player straight from the file to the socket channel (see
+ * SimplexCacheEntry.transferTo), without being copied through the heap.
+ * How far ahead of the playhead the network gets used is decided by a prefetch scheduler, and
+ * every network read is timed to feed a bandwidth estimator.
+ * Media that are being downloaded to a file (see SimplexDownloader) can be registered with the
+ * proxy too; those get served from the file as it's written, instead of from the cache, so
+ * they can be played while downloading without being downloaded twice.
+ * It's plain Java, with no Android dependencies, so it can be pointed at any HTTP server.
+ */
+public class SimplexCacheProxy {
+
+    // size of the buffer used to copy data
+    private static final int        BUFFER_SIZE     = 16 * 1024;
+
+    // network timeouts, in ms
+    private static final int        CONNECT_TIMEOUT = 10000;
+    private static final int        READ_TIMEOUT    = 15000;
+
+    // default content type of the served media
+    private static final String     DEFAULT_TYPE    = "application/octet-stream";
+
+    // pattern of the "Range" header values the proxy understands
+    private static final Pattern    RANGE_PATTERN   = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    // pattern of the "Content-Range" header values of remote responses
+    private static final Pattern    CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    // the cache that backs the proxy
+    private SimplexMediaCache       cache;
+
+    // the scheduler that holds back downloads too far ahead of the playhead
+    private SimplexPrefetchScheduler scheduler      = new SimplexPrefetchScheduler();
+
+    // the estimator fed with the throughput of every network read
+    private SimplexBandwidthEstimator estimator     = new SimplexBandwidthEstimator();
+
+    // media being downloaded to a file, that get served from there, by remote url
+    private Map<String, SimplexDownloader> downloads = new HashMap<>();
+
+    // the server channel, the thread accepting connections on it & the pool serving them
+    private ServerSocketChannel     serverChannel   = null;
+    private Thread                  acceptThread    = null;
+    private ExecutorService         connectionPool  = null;
+
+    /**
+     * Constructor with the cache the proxy reads from and writes to
+     *
+     * @param cache a media cache
+     */
+    public SimplexCacheProxy (SimplexMediaCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Method that starts the proxy on a free loopback port, if it's not already running. The
+     * cache gets loaded on the proxy's own thread, before the first connection is served.
+     *
+     * @throws IOException if the server socket can't be opened
+     */
+    public synchronized void start () throws IOException {
+
+        if (serverChannel != null) return;
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 16);
+
+        connectionPool = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SimplexCacheConnection");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final ServerSocketChannel channel = serverChannel;
+        final ExecutorService pool = connectionPool;
+
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections(channel, pool);
+            }
+        }, "SimplexCacheProxy");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Method that stops the proxy. Connections that are still being served get closed
+     * when their next read or write fails.
+     */
+    public synchronized void stop () {
+
+        if (serverChannel == null) return;
+
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        connectionPool.shutdownNow();
+
+        serverChannel = null;
+        acceptThread = null;
+        connectionPool = null;
+    }
+
+    /**
+     * Method that checks whether the proxy is running
+     *
+     * @return true or false
+     */
+    public synchronized boolean isRunning () {
+        return serverChannel != null;
+    }
+
+    /**
+     * Method that returns the loopback url that serves a remote media url through the proxy
+     *
+     * @param url           the remote media url
+     * @return              the proxy url
+     * @throws IOException  if the proxy isn't running
+     */
+    public synchronized String getProxyUrl (String url) throws IOException {
+
+        if (serverChannel == null) {
+            throw new IOException("Cache proxy is not running");
+        }
+
+        return "http://127.0.0.1:" + serverChannel.socket().getLocalPort() + "/?url=" + URLEncoder.encode(url, "UTF-8");
+    }
+
+    /**
+     * Getter for the cache that backs the proxy
+     *
+     * @return the media cache
+     */
+    public SimplexMediaCache getCache () {
+        return cache;
+    }
+
+    /**
+     * Getter for the prefetch scheduler of the proxy, that the player keeps updated with
+     * its playback position
+     *
+     * @return the prefetch scheduler
+     */
+    public SimplexPrefetchScheduler getScheduler () {
+        return scheduler;
+    }
+
+    /**
+     * Setter for the bandwidth estimator the proxy feeds
+     *
+     * @param estimator a new, non-null (hopefully) instance
+     */
+    public void setBandwidthEstimator (SimplexBandwidthEstimator estimator) {
+        this.estimator = estimator != null ? estimator : this.estimator;
+    }
+
+    /**
+     * Getter for the bandwidth estimator the proxy feeds
+     *
+     * @return the bandwidth estimator
+     */
+    public SimplexBandwidthEstimator getBandwidthEstimator () {
+        return estimator;
+    }
+
+    /**
+     * Method that registers a media being downloaded to a file, so that requests for its url
+     * get served from that file, as it's written
+     *
+     * @param downloader the download of the media
+     */
+    public synchronized void addDownload (SimplexDownloader downloader) {
+        downloads.put(downloader.getUrl(), downloader);
+    }
+
+    /**
+     * Method that stops serving a media from the file it's downloaded to
+     *
+     * @param url the remote media url
+     */
+    public synchronized void removeDownload (String url) {
+        downloads.remove(url);
+    }
+
+    /**
+     * Method that checks whether a media is served from the file it's downloaded to
+     *
+     * @param url   the remote media url
+     * @return      true or false
+     */
+    public synchronized boolean hasDownload (String url) {
+        return downloads.containsKey(url);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Connections
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that accepts connections until the server channel gets closed, and hands each
+     * of them to the connection pool
+     *
+     * @param channel the server channel
+     * @param pool    the connection pool
+     */
+    private void acceptConnections (ServerSocketChannel channel, ExecutorService pool) {
+
+        // pick up what's already cached before serving anything, off the caller's thread
+        cache.load();
+
+        while (channel.isOpen()) {
+            try {
+                final SocketChannel client = channel.accept();
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(client);
+                    }
+                });
+            } catch (ClosedChannelException e) {
+                // the server channel got closed
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Method that reads a single request from a client connection and answers it, with
+     * cached blocks where there are any, and from the network for the gaps in between
+     *
+     * @param client the client connection
+     */
+    private void serveConnection (SocketChannel client) {
+
+        try {
+            Socket socket = client.socket();
+            Request request = Request.read(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+
+            SimplexDownloader downloader;
+            synchronized (this) {
+                downloader = request != null ? downloads.get(request.url) : null;
+            }
+
+            if (request == null || request.url == null) {
+                writeHeaders(out, 400, "Bad Request", null, 0, -1, -1, -1);
+            } else if (downloader != null) {
+                serveDownload(out, client, request, downloader);
+            } else {
+                SimplexCacheEntry entry = cache.open(SimplexMediaCache.keyFor(request.url));
+                try {
+                    serveRequest(out, client, request, entry);
+                } finally {
+                    cache.close(entry);
+                }
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            // the player closed the connection (which it does a lot while seeking), or
+            // the network failed; either way the player will retry if it needs to
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Method that answers a request for (a range of) a media. The range is split into runs of
+     * cached and missing blocks: cached runs are read from disk, while missing ones are
+     * downloaded (from the start of their first block), written to the cache and passed on.
+     *
+     * @param out           the client output
+     * @param channel       the client channel, the same connection as the output
+     * @param request       the client request
+     * @param entry         the cache entry of the media
+     * @throws IOException  if the network or disk fail, or the client is gone
+     */
+    private void serveRequest (OutputStream out, WritableByteChannel channel, Request request,
+                               SimplexCacheEntry entry) throws IOException {
+
+        // one buffer for everything that does go through the heap (data from the network)
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        long start = Math.max(request.rangeStart, 0);
+        long length = entry.getLength();
+
+        // connection opened to find out the length of a new media, that can be used to
+        // download its first gap
+        HttpURLConnection connection = null;
+        long connectionStart = -1;
+
+        try {
+            if (length < 0) {
+
+                connectionStart = alignDown(start, entry);
+                long connectionEnd = request.rangeEnd < 0 ? -1 : alignDown(request.rangeEnd, entry) + entry.getBlockSize() - 1;
+                connection = openConnection(request.url, connectionStart, connectionEnd);
+
+                // pass errors through, without a body
+                int code = connection.getResponseCode();
+                if (code != 200 && code != 206) {
+                    writeHeaders(out, code, "Error", null, 0, -1, -1, -1);
+                    return;
+                }
+
+                // a media of unknown length (e.g. a live stream) can't be cached
+                length = totalLength(connection, code);
+                if (length < 0) {
+                    writeHeaders(out, 200, "OK", connection.getContentType(), -1, -1, -1, -1);
+                    if (!request.isHead) {
+                        skipTo(connection.getInputStream(), code, connectionStart);
+                        copyStream(connection.getInputStream(), out, buffer);
+                    }
+                    return;
+                }
+
+                entry.setMetadata(length, connection.getContentType());
+            }
+
+            String type = entry.getContentType() != null ? entry.getContentType() : guessContentType(request.url);
+            long end = request.rangeEnd < 0 ? length - 1 : Math.min(request.rangeEnd, length - 1);
+
+            // write the headers
+            if (!writeMediaHeaders(out, request, type, length) || request.isHead) return;
+
+            // and the body, run by run
+            long position = start;
+            while (position <= end) {
+
+                long runEnd = entry.findRunEnd(position);
+                long sendEnd = Math.min(runEnd, end + 1);
+
+                if (entry.isCached(position)) {
+                    copyFromCache(channel, entry, position, sendEnd);
+                } else {
+                    // download whole blocks, but not (much) further than the client needs
+                    long fetchStart = alignDown(position, entry);
+                    long fetchEnd = Math.min(runEnd, Math.min(alignDown(end, entry) + entry.getBlockSize(), length));
+
+                    // while held back by the prefetch scheduler, don't keep a remote request open
+                    if (!scheduler.mayFetch(entry.getKey(), fetchStart, length)) {
+                        if (connection != null) {
+                            connection.disconnect();
+                            connection = null;
+                        }
+                        scheduler.awaitFetch(entry.getKey(), fetchStart, length);
+                    }
+
+                    if (connection == null || connectionStart != fetchStart) {
+                        if (connection != null) {
+                            connection.disconnect();
+                        }
+                        connection = openConnection(request.url, fetchStart, fetchEnd - 1);
+                        connectionStart = fetchStart;
+                    }
+
+                    int code = connection.getResponseCode();
+                    if (code != 200 && code != 206) {
+                        throw new IOException("Unexpected response " + code + " for " + request.url);
+                    }
+
+                    InputStream in = connection.getInputStream();
+                    skipTo(in, code, fetchStart);
+                    long fetched = copyToCache(in, out, buffer, entry, fetchStart, fetchEnd, position, sendEnd);
+
+                    connection.disconnect();
+                    connection = null;
+
+                    // if the window filled up, carry on from there with a new request
+                    if (fetched < sendEnd) {
+                        position = fetched;
+                        continue;
+                    }
+                }
+
+                position = sendEnd;
+            }
+
+            out.flush();
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Method that answers a request for (a range of) a media that's being downloaded to a
+     * file, from that file. Whenever the data isn't there yet, it waits for the download.
+     *
+     * @param out           the client output
+     * @param channel       the client channel, the same connection as the output
+     * @param request       the client request
+     * @param downloader    the download of the media
+     * @throws IOException  if the download stops, the file can't be read or the client is gone
+     */
+    private static void serveDownload (OutputStream out, WritableByteChannel channel, Request request,
+                                       SimplexDownloader downloader) throws IOException {
+
+        long length = downloader.awaitLength();
+        long start = Math.max(request.rangeStart, 0);
+        long end = request.rangeEnd < 0 ? length - 1 : Math.min(request.rangeEnd, length - 1);
+
+        // write the headers
+        if (!writeMediaHeaders(out, request, guessContentType(request.url), length) || request.isHead) return;
+        out.flush();
+
+        // and the body, straight from the file, as far as it's written each time
+        FileChannel file = downloader.openForReading();
+        try {
+            long position = start;
+            while (position <= end) {
+                long available = Math.min(downloader.awaitData(position), end + 1);
+                while (position < available) {
+                    position += file.transferTo(position, available - position, channel);
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Method that sends cached data to the client, straight from the cache to the client channel
+     *
+     * @param channel       the client channel
+     * @param entry         the cache entry of the media
+     * @param start         the first byte to send
+     * @param end           the (exclusive) last byte to send
+     * @throws IOException  if the data can't be read or the client is gone
+     */
+    private static void copyFromCache (WritableByteChannel channel, SimplexCacheEntry entry, long start, long end) throws IOException {
+
+        long position = start;
+
+        while (position < end) {
+            position += entry.transferTo(position, end - position, channel);
+        }
+    }
+
+    /**
+     * Method that reads a downloaded range into the cache, while sending the part of it the
+     * client asked for on to the client. Before every block after the first, it asks the
+     * prefetch scheduler whether the download is too far ahead of the playhead, and if so, it
+     * stops there, so the request can be ended instead of being left idle.
+     *
+     * @param in            the network input, at the start of the downloaded range
+     * @param out           the client output
+     * @param buffer        the buffer to read through
+     * @param entry         the cache entry of the media
+     * @param fetchStart    the first byte of the downloaded range, on a block boundary
+     * @param fetchEnd      the (exclusive) last byte of the downloaded range
+     * @param sendStart     the first byte to send to the client
+     * @param sendEnd       the (exclusive) last byte to send to the client
+     * @return              the (exclusive) last byte read, i.e. fetchEnd, or the block boundary
+     *                      the download was held back at
+     * @throws IOException  if the network or disk fail, or the client is gone
+     */
+    private long copyToCache (InputStream in, OutputStream out, byte[] buffer, SimplexCacheEntry entry,
+                              long fetchStart, long fetchEnd, long sendStart, long sendEnd) throws IOException {
+
+        long position = fetchStart;
+
+        while (position < fetchEnd) {
+
+            // reads stop at block boundaries, where the download can be held back
+            long blockEnd = alignDown(position, entry) + entry.getBlockSize();
+            if (position > fetchStart && position == blockEnd - entry.getBlockSize() &&
+                    !scheduler.mayFetch(entry.getKey(), position, entry.getLength())) {
+                return position;
+            }
+
+            int read = timedRead(in, buffer, (int) Math.min(buffer.length, Math.min(fetchEnd, blockEnd) - position));
+            if (read < 0) {
+                throw new IOException("Remote media is shorter than expected");
+            }
+
+            // everything goes to the cache
+            entry.write(buffer, read, position, fetchStart);
+
+            // while only the requested part goes to the client
+            long from = Math.max(position, sendStart);
+            long to = Math.min(position + read, sendEnd);
+            if (to > from) {
+                out.write(buffer, (int) (from - position), (int) (to - from));
+            }
+
+            position += read;
+        }
+
+        return position;
+    }
+
+    /**
+     * Method that opens a connection to a remote media, for a range of it
+     *
+     * @param url           the remote media url
+     * @param start         the first byte of the range
+     * @param end           the last byte of the range, or -1 for the rest of the media
+     * @return              the connection
+     * @throws IOException  if the connection can't be opened
+     */
+    private static HttpURLConnection openConnection (String url, long start, long end) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setInstanceFollowRedirects(true);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : ""));
+
+        return connection;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that writes the headers of a response to a request for (a range of) a media of
+     * known length
+     *
+     * @param out           the client output
+     * @param request       the client request
+     * @param type          the content type of the media
+     * @param length        the total length of the media
+     * @return              true if a body should follow, false if the range can't be satisfied
+     * @throws IOException  if the client is gone
+     */
+    private static boolean writeMediaHeaders (OutputStream out, Request request, String type, long length) throws IOException {
+
+        long start = Math.max(request.rangeStart, 0);
+        long end = request.rangeEnd < 0 ? length - 1 : Math.min(request.rangeEnd, length - 1);
+
+        if (request.rangeStart < 0) {
+            writeHeaders(out, 200, "OK", type, length, -1, -1, -1);
+        } else if (start >= length || start > end) {
+            writeHeaders(out, 416, "Range Not Satisfiable", null, 0, -1, -1, length);
+            return false;
+        } else {
+            writeHeaders(out, 206, "Partial Content", type, end - start + 1, start, end, length);
+        }
+
+        return true;
+    }
+
+    /**
+     * Method that writes the status line and headers of a response
+     *
+     * @param out           the client output
+     * @param code          the status code
+     * @param message       the status message
+     * @param type          the content type, or null
+     * @param length        the content length, or -1 if not known
+     * @param start         the first byte of the content range, or -1 if not a range
+     * @param end           the last byte of the content range
+     * @param total         the total length of the media, or -1 if not known
+     * @throws IOException  if the client is gone
+     */
+    private static void writeHeaders (OutputStream out, int code, String message, String type,
+                                      long length, long start, long end, long total) throws IOException {
+
+        StringBuilder headers = new StringBuilder();
+        headers.append("HTTP/1.1 ").append(code).append(' ').append(message).append("\r\n");
+        headers.append("Accept-Ranges: bytes\r\n");
+        if (type != null) {
+            headers.append("Content-Type: ").append(type).append("\r\n");
+        }
+        if (length >= 0) {
+            headers.append("Content-Length: ").append(length).append("\r\n");
+        }
+        if (start >= 0) {
+            headers.append("Content-Range: bytes ").append(start).append('-').append(end)
+                    .append('/').append(total >= 0 ? String.valueOf(total) : "*").append("\r\n");
+        } else if (code == 416) {
+            headers.append("Content-Range: bytes */").append(total).append("\r\n");
+        }
+        headers.append("Connection: close\r\n\r\n");
+
+        out.write(headers.toString().getBytes("ISO-8859-1"));
+    }
+
+    /**
+     * Method that copies a whole stream to the client
+     *
+     * @param in            the input stream
+     * @param out           the client output
+     * @param buffer        the buffer to copy through
+     * @throws IOException  if the input fails or the client is gone
+     */
+    private void copyStream (InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int read;
+        while ((read = timedRead(in, buffer, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Method that reads from the network, and feeds the bandwidth estimator with how long it
+     * took. Only the time spent reading counts, not the time spent writing to the player or
+     * being held back by the prefetch scheduler.
+     *
+     * @param in            the network input
+     * @param buffer        the buffer to read into
+     * @param count         maximum number of bytes to read
+     * @return              number of bytes read, or -1 at the end of the input
+     * @throws IOException  if the network fails
+     */
+    private int timedRead (InputStream in, byte[] buffer, int count) throws IOException {
+
+        long start = System.nanoTime();
+        int read = in.read(buffer, 0, count);
+
+        if (read > 0) {
+            estimator.onBytesTransferred(read, System.nanoTime() - start);
+        }
+
+        return read;
+    }
+
+    /**
+     * Method that skips to the start of the requested range in a response, for servers that
+     * ignore range requests and always answer with the whole media
+     *
+     * @param in            the network input
+     * @param code          the response code
+     * @param start         the first byte of the requested range
+     * @throws IOException  if the input fails
+     */
+    private static void skipTo (InputStream in, int code, long start) throws IOException {
+
+        if (code != 200) return;
+
+        long remaining = start;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new IOException("Remote media is shorter than expected");
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Method that reads the total length of a media from a response
+     *
+     * @param connection    the connection
+     * @param code          the response code
+     * @return              the total length, or -1 if not known
+     */
+    private static long totalLength (URLConnection connection, int code) {
+
+        if (code == 200) {
+            return contentLength(connection);
+        }
+
+        Matcher range = CONTENT_RANGE_PATTERN.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+        if (range.find() && !range.group(3).equals("*")) {
+            return Long.parseLong(range.group(3));
+        }
+        return -1;
+    }
+
+    /**
+     * Method that aligns a position down to the start of its block
+     *
+     * @param position  a position in the media
+     * @param entry     the cache entry of the media
+     * @return          the start of the block
+     */
+    private static long alignDown (long position, SimplexCacheEntry entry) {
+        return position - position % entry.getBlockSize();
+    }
+
+    /**
+     * Method that reads the content length of a response, as a long
+     *
+     * @param connection    the connection
+     * @return              the content length, or -1 if not known
+     */
+    private static long contentLength (URLConnection connection) {
+        try {
+            return Long.parseLong(connection.getHeaderField("Content-Length"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Method that guesses the content type of a media from its url
+     *
+     * @param url   the remote media url
+     * @return      the content type
+     */
+    private static String guessContentType (String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        String type = URLConnection.guessContentTypeFromName(path);
+        if (type == null && path.endsWith(".mp4")) {
+            type = "video/mp4";
+        }
+        return type != null ? type : DEFAULT_TYPE;
+    }
+
+    /**
+     * Class that holds the parts of a client request the proxy cares about
+     */
+    private static class Request {
+
+        // the remote media url, the raw "Range" header, and its parsed bounds
+        private String  url         = null;
+        private String  rangeHeader = null;
+        private long    rangeStart  = -1;
+        private long    rangeEnd    = -1;
+        private boolean isHead      = false;
+
+        /**
+         * Method that reads a request line and its headers
+         *
+         * @param in            the client input
+         * @return              the request, or null if it's not a valid one
+         * @throws IOException  if the client is gone
+         */
+        static Request read (InputStream in) throws IOException {
+
+            String line = readLine(in);
+            if (line == null) return null;
+
+            // request line, e.g. "GET /?url=... HTTP/1.1"
+            String[] parts = line.split(" ");
+            if (parts.length < 2) return null;
+
+            Request request = new Request();
+            request.isHead = parts[0].equals("HEAD");
+            request.url = parseUrl(parts[1]);
+
+            // headers
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    request.rangeHeader = line.substring(colon + 1).trim();
+                    Matcher matcher = RANGE_PATTERN.matcher(request.rangeHeader);
+                    if (matcher.matches()) {
+                        request.rangeStart = Long.parseLong(matcher.group(1));
+                        request.rangeEnd = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+                    }
+                }
+            }
+
+            return request;
+        }
+
+        /**
+         * Method that finds the remote media url in the path of a proxy url
+         *
+         * @param path  the request path
+         * @return      the remote media url, or null if there's none
+         */
+        private static String parseUrl (String path) {
+
+            int index = path.indexOf("url=");
+            if (index < 0) return null;
+
+            String value = path.substring(index + 4);
+            int next = value.indexOf('&');
+            if (next >= 0) {
+                value = value.substring(0, next);
+            }
+
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Method that reads a single header line
+         *
+         * @param in            the client input
+         * @return              the line, without its line break, or null at the end of input
+         * @throws IOException  if the client is gone
+         */
+        private static String readLine (InputStream in) throws IOException {
+
+            StringBuilder builder = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') break;
+                if (c != '\r') builder.append((char) c);
+            }
+
+            return c == -1 && builder.length() == 0 ? null : builder.toString();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that holds (partially) downloaded remote media in a directory on disk, bounded in
+ * total size. Each media is a sparse SimplexCacheEntry made of fixed-size blocks, so any
+ * range that's been downloaded once never needs to be downloaded again, however the media
+ * was played or seeked in.
+ * When the bound is exceeded, the least recently used media that aren't being played get
+ * evicted. Recency is kept in memory and mirrored in the index files' "last modified" time,
+ * so the order survives process restarts. It's plain Java, with no Android dependencies.
+ * Creating a cache doesn't touch the disk: the media already in the directory are picked up
+ * by "load", which is meant to be called on a background thread (the cache proxy does it on
+ * its own thread), and which the other methods call too, in case it hasn't happened yet.
+ */
+public class SimplexMediaCache {
+
+    // default size bound of the cache, in bytes
+    public static final long    DEFAULT_MAX_SIZE   = 100 * 1024 * 1024;
+
+    // default size of the blocks media are cached in, in bytes
+    public static final int     DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    // suffixes of index files & of files that are still being written
+    static final String         INDEX_SUFFIX       = ".idx";
+    static final String         TEMP_SUFFIX        = ".tmp";
+
+    // the cache directory, its size bound & the block size of new entries
+    private File                directory;
+    private volatile long       maxSize;
+    private int                 blockSize;
+
+    // whether the media already in the directory have been picked up
+    private volatile boolean    isLoaded           = false;
+
+    // cache entries (by key) in least to most recently used order
+    private LinkedHashMap<String, SimplexCacheEntry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * Constructor with the cache directory and size bound
+     *
+     * @param directory the directory to keep the media in
+     * @param maxSize   the maximum total size of the media, in bytes
+     */
+    public SimplexMediaCache (File directory, long maxSize) {
+        this(directory, maxSize, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor with the cache directory, size bound and block size
+     *
+     * @param directory the directory to keep the media in
+     * @param maxSize   the maximum total size of the media, in bytes
+     * @param blockSize the size of the blocks new media are cached in, in bytes
+     */
+    public SimplexMediaCache (File directory, long maxSize, int blockSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Method that picks up the media already in the directory, oldest first, deletes leftover
+     * files that don't belong to a valid entry, and evicts media if they don't fit the size
+     * bound. Only the first call does anything; since it lists and reads files, it should be
+     * made on a background thread.
+     */
+    public synchronized void load () {
+
+        if (isLoaded) return;
+
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            isLoaded = true;
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        // load entries from their index files
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(INDEX_SUFFIX)) continue;
+
+            String key = name.substring(0, name.length() - INDEX_SUFFIX.length());
+            try {
+                entries.put(key, SimplexCacheEntry.load(directory, key));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // and delete everything else
+        for (File file : files) {
+            String name = file.getName();
+            String key = name.endsWith(INDEX_SUFFIX) ? name.substring(0, name.length() - INDEX_SUFFIX.length()) : name;
+            if (!entries.containsKey(key)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+
+        isLoaded = true;
+        trim();
+    }
+
+    /**
+     * Method that opens the cache entry of a media, creating it if needed, and marks it as the
+     * most recently used. Every opened entry must be closed through "close".
+     *
+     * @param key           the cache key of the media
+     * @return              the entry
+     * @throws IOException  if its data file can't be opened
+     */
+    public synchronized SimplexCacheEntry open (String key) throws IOException {
+
+        load();
+
+        SimplexCacheEntry entry = entries.get(key);
+        if (entry == null) {
+            //noinspection ResultOfMethodCallIgnored
+            directory.mkdirs();
+            entry = new SimplexCacheEntry(directory, key, blockSize);
+            entries.put(key, entry);
+        }
+
+        entry.retain();
+        entry.touch();
+        return entry;
+    }
+
+    /**
+     * Method that closes a cache entry opened through "open", and evicts the least recently
+     * used media if the cache has grown past its size bound
+     *
+     * @param entry the entry
+     */
+    public synchronized void close (SimplexCacheEntry entry) {
+        entry.release();
+        trim();
+    }
+
+    /**
+     * Method that returns the data file of a media, if it's fully cached, and marks it as
+     * the most recently used
+     *
+     * @param key the cache key of the media
+     * @return    the data file, or null if the media isn't fully cached
+     */
+    public synchronized File getFile (String key) {
+
+        load();
+
+        SimplexCacheEntry entry = entries.get(key);
+        if (entry == null || !entry.isComplete()) return null;
+
+        entry.touch();
+        return entry.getDataFile();
+    }
+
+    /**
+     * Method that removes a media from the cache, unless it's being played
+     *
+     * @param key the cache key of the media
+     */
+    public synchronized void remove (String key) {
+        load();
+        SimplexCacheEntry entry = entries.get(key);
+        if (entry != null && !entry.isInUse()) {
+            entries.remove(key);
+            entry.delete();
+        }
+    }
+
+    /**
+     * Method that changes the size bound of the cache, evicting media if needed. It doesn't
+     * wait for the cache to load: a cache that isn't loaded yet gets trimmed once it is.
+     *
+     * @param maxSize the maximum total size of the media, in bytes
+     */
+    public void setMaxSize (long maxSize) {
+        this.maxSize = maxSize;
+        if (isLoaded) trim();
+    }
+
+    /**
+     * Getter for the size bound of the cache
+     *
+     * @return the maximum total size of the media, in bytes
+     */
+    public long getMaxSize () {
+        return maxSize;
+    }
+
+    /**
+     * Getter for the total size of the cached blocks
+     *
+     * @return the total size in bytes
+     */
+    public synchronized long getSize () {
+        load();
+        long size = 0;
+        for (SimplexCacheEntry entry : entries.values()) {
+            size += entry.getCachedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Method that evicts the least recently used media, that aren't being played, until the
+     * cache fits its size bound
+     */
+    private synchronized void trim () {
+
+        long size = getSize();
+        List<SimplexCacheEntry> evicted = new ArrayList<>();
+
+        Iterator<Map.Entry<String, SimplexCacheEntry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            SimplexCacheEntry entry = iterator.next().getValue();
+            if (entry.isInUse()) continue;
+            size -= entry.getCachedSize();
+            evicted.add(entry);
+            iterator.remove();
+        }
+
+        for (SimplexCacheEntry entry : evicted) {
+            entry.delete();
+        }
+    }
+
+    /**
+     * Method that turns a media url into a cache key that's safe to use as a file name
+     *
+     * @param url the remote media url
+     * @return    the hex MD5 hash of the url
+     */
+    public static String keyFor (String url) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // every JVM has MD5 & UTF-8, so this never really happens
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class that decides how far ahead of the playhead the cache proxy may download a media.
+ * The player keeps it updated with the playback position of each media it's playing; the
+ * proxy asks it before downloading every block, and is held back once it's a whole window (in
+ * seconds of media, converted to bytes through the average bitrate) ahead of the playhead.
+ * Downloading only resumes once the playhead has caught up to a low-water mark, so the
+ * network is used in bursts rather than trickling, and never for bytes far from being played.
+ * While held back, the proxy doesn't keep its remote request open (the server would drop an
+ * idle connection sooner or later): it ends it, waits, and makes a new range request.
+ * Media the player hasn't reported a position for yet (e.g. while preparing) are never held
+ * back, and neither is the end of a media, where its headers might be.
+ */
+public class SimplexPrefetchScheduler {
+
+    // default download-ahead window & low-water mark, in ms of media
+    public static final long    DEFAULT_WINDOW     = 30000;
+    public static final long    DEFAULT_LOW_WATER  = 10000;
+
+    // size of the end of a media that's never held back, in bytes
+    private static final long   HEADER_TAIL_SIZE   = 256 * 1024;
+
+    // the current window & low-water mark, in ms of media
+    private long                window             = DEFAULT_WINDOW;
+    private long                lowWater           = DEFAULT_LOW_WATER;
+
+    // playheads of the media being played, by cache key
+    private Map<String, Playhead> playheads        = new HashMap<>();
+
+    /**
+     * Method that sets the download-ahead window and low-water mark
+     *
+     * @param window    how far ahead of the playhead to download, in ms of media
+     * @param lowWater  how far ahead of the playhead downloading resumes, in ms of media
+     */
+    public synchronized void setWindow (long window, long lowWater) {
+        this.window = window;
+        this.lowWater = Math.min(lowWater, window);
+        notifyAll();
+    }
+
+    /**
+     * Method that updates the playhead of a media
+     *
+     * @param key       the cache key of the media
+     * @param position  the playback position, in ms
+     * @param duration  the total duration of the media, in ms
+     */
+    public synchronized void updatePlayhead (String key, long position, long duration) {
+
+        Playhead playhead = playheads.get(key);
+        if (playhead == null) {
+            playhead = new Playhead();
+            playheads.put(key, playhead);
+        }
+
+        playhead.position = position;
+        playhead.duration = duration;
+        notifyAll();
+    }
+
+    /**
+     * Method that forgets the playhead of a media that's no longer played, so downloads of it
+     * are no longer held back
+     *
+     * @param key the cache key of the media
+     */
+    public synchronized void clearPlayhead (String key) {
+        if (playheads.remove(key) != null) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Method that checks, without blocking, whether the proxy may download the byte at a
+     * position of a media right now
+     *
+     * @param key       the cache key of the media
+     * @param position  the position of the byte in the media
+     * @param length    the total length of the media, in bytes
+     * @return          true if it may, false if it's held back
+     */
+    public synchronized boolean mayFetch (String key, long position, long length) {
+        return !isHeldBack(key, position, length);
+    }
+
+    /**
+     * Method that blocks until the proxy may download the byte at a position of a media
+     *
+     * @param key                       the cache key of the media
+     * @param position                  the position of the byte in the media
+     * @param length                    the total length of the media, in bytes
+     * @throws InterruptedIOException   if the thread gets interrupted while waiting
+     */
+    public synchronized void awaitFetch (String key, long position, long length) throws InterruptedIOException {
+
+        while (isHeldBack(key, position, length)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting to prefetch");
+            }
+        }
+    }
+
+    /**
+     * Method that checks whether downloading the byte at a position of a media is held back:
+     * once it's a whole window ahead of the playhead, and until the playhead has caught up
+     * to the low-water mark
+     *
+     * @param key       the cache key of the media
+     * @param position  the position of the byte in the media
+     * @param length    the total length of the media, in bytes
+     * @return          true or false
+     */
+    private boolean isHeldBack (String key, long position, long length) {
+
+        Playhead playhead = playheads.get(key);
+        if (playhead == null || playhead.duration <= 0 || position >= length - HEADER_TAIL_SIZE) return false;
+
+        // how far ahead of the playhead the byte is, in ms of media
+        double bytesPerMs = length / (double) playhead.duration;
+        long ahead = (long) (position / bytesPerMs) - playhead.position;
+
+        if (playhead.isWindowFull) {
+            if (ahead <= lowWater) {
+                playhead.isWindowFull = false;
+                return false;
+            }
+        } else if (ahead < window) {
+            return false;
+        } else {
+            playhead.isWindowFull = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Class that holds the playhead of a media
+     */
+    private static class Playhead {
+        private long    position     = 0;
+        private long    duration     = 0;
+        private boolean isWindowFull = false;
+    }
+}
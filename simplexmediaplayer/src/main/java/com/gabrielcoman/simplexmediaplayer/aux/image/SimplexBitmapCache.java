@@ -0,0 +1,68 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.image;
+
+import android.graphics.Bitmap;
+
+/**
+ * Aux class that holds the built-in bitmaps of the player, shared by all styles and players in
+ * the process. Each is only decoded the first time it's needed, and decoded bitmaps are
+ * immutable, so they can safely be shown by any number of views at once.
+ * Under memory pressure the cache can be trimmed: bitmaps that are still shown stay alive
+ * through their views, and are decoded again the next time they're needed.
+ */
+public class SimplexBitmapCache {
+
+    // the decoded bitmaps, or null if they haven't been decoded (or have been trimmed)
+    private static Bitmap playButton    = null;
+    private static Bitmap replayButton  = null;
+    private static Bitmap videoGradient = null;
+
+    /**
+     * Method that returns the built-in play button bitmap, decoding it if needed
+     *
+     * @return the bitmap
+     */
+    public static synchronized Bitmap getPlayButtonBitmap () {
+        if (playButton == null) {
+            playButton = SimplexBitmap.createPlayButtonBitmap();
+        }
+        return playButton;
+    }
+
+    /**
+     * Method that returns the built-in replay button bitmap, decoding it if needed
+     *
+     * @return the bitmap
+     */
+    public static synchronized Bitmap getReplayButtonBitmap () {
+        if (replayButton == null) {
+            replayButton = SimplexBitmap.createReplayButtonBitmap();
+        }
+        return replayButton;
+    }
+
+    /**
+     * Method that returns the built-in bottom video gradient bitmap, decoding it if needed
+     *
+     * @return the bitmap
+     */
+    public static synchronized Bitmap getVideoGradientBitmap () {
+        if (videoGradient == null) {
+            videoGradient = SimplexBitmap.createVideoGradientBitmap();
+        }
+        return videoGradient;
+    }
+
+    /**
+     * Method that lets go of all decoded bitmaps. They're not recycled, since views may still
+     * be showing them.
+     */
+    public static synchronized void trim () {
+        playButton = null;
+        replayButton = null;
+        videoGradient = null;
+    }
+}
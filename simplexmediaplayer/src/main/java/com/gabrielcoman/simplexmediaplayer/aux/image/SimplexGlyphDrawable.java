@@ -0,0 +1,230 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.image;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Drawable that draws the built-in play or replay glyph of the player as a path, so it's
+ * sharp at any size, and costs nothing to decode or keep in memory. The glyphs are laid out
+ * the same as the built-in 128 x 128 bitmaps were, in a square as large as fits the bounds:
+ * - play: a white triangle pointing right
+ * - replay: a white ring going clockwise, with an arrow head at its end
+ * Both get a faint dark outline, so they stand out on light video too.
+ * It has no intrinsic size, so views give it their whole size and it's laid out right at the
+ * pixel size it's drawn at, whatever the density, instead of being scaled.
+ */
+public class SimplexGlyphDrawable extends Drawable {
+
+    // the glyphs that can be drawn
+    public enum Glyph {
+        PLAY,
+        REPLAY
+    }
+
+    // the size of the square the glyphs are laid out in, in units
+    private static final float  UNITS           = 128;
+
+    // the play triangle, in units
+    private static final float  PLAY_LEFT       = 16;
+    private static final float  PLAY_TOP        = 17;
+    private static final float  PLAY_BOTTOM     = 111;
+    private static final float  PLAY_TIP        = 112;
+
+    // the replay ring, in units & degrees (clockwise from 3 o'clock): it starts right below
+    // the arrow head, and goes round clockwise until the arrow head starts
+    private static final float  RING_CENTER_X   = 64;
+    private static final float  RING_CENTER_Y   = 63;
+    private static final float  RING_INNER      = 37;
+    private static final float  RING_OUTER      = 56;
+    private static final float  RING_START      = 347;
+    private static final float  RING_SWEEP      = 313;
+
+    // the replay arrow head, in units & degrees: its base spans across the end of the ring and
+    // its tip is on the middle of the ring, pointing clockwise
+    private static final float  ARROW_INNER     = 27;
+    private static final float  ARROW_OUTER     = 65;
+    private static final float  ARROW_TIP       = 336;
+
+    // the outline around the glyph, in units
+    private static final float  OUTLINE_WIDTH   = 5;
+    private static final int    OUTLINE_COLOR   = 0x30000000;
+
+    // the glyph to draw & its path, laid out for the current bounds
+    private Glyph               glyph;
+    private Path                path            = new Path();
+
+    // paints for the glyph & its outline
+    private Paint               fillPaint       = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private Paint               outlinePaint    = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // aux vars used to lay the path out
+    private RectF               arcRect         = new RectF();
+    private float               left            = 0;
+    private float               top             = 0;
+    private float               scale           = 0;
+
+    /**
+     * Constructor with the glyph to draw
+     *
+     * @param glyph the glyph
+     */
+    public SimplexGlyphDrawable(Glyph glyph) {
+
+        this.glyph = glyph;
+
+        fillPaint.setColor(Color.WHITE);
+        fillPaint.setStyle(Paint.Style.FILL);
+
+        outlinePaint.setColor(OUTLINE_COLOR);
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        outlinePaint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Drawable
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Overridden Drawable method that lays the glyph out again for the new bounds
+     *
+     * @param bounds the new bounds
+     */
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+
+        float side = Math.min(bounds.width(), bounds.height());
+        left = bounds.left + (bounds.width() - side) / 2.0F;
+        top = bounds.top + (bounds.height() - side) / 2.0F;
+        scale = side / UNITS;
+
+        outlinePaint.setStrokeWidth(OUTLINE_WIDTH * scale);
+
+        path.reset();
+        switch (glyph) {
+            case PLAY: {
+                path.moveTo(x(PLAY_LEFT), y(PLAY_TOP));
+                path.lineTo(x(PLAY_TIP), y((PLAY_TOP + PLAY_BOTTOM) / 2.0F));
+                path.lineTo(x(PLAY_LEFT), y(PLAY_BOTTOM));
+                path.close();
+                break;
+            }
+            case REPLAY: {
+                float end = RING_START + RING_SWEEP;
+
+                // the ring, as the area between its outer & inner arcs
+                path.moveTo(xAt(RING_OUTER, RING_START), yAt(RING_OUTER, RING_START));
+                arcTo(RING_OUTER, RING_START, RING_SWEEP);
+                path.lineTo(xAt(RING_INNER, end), yAt(RING_INNER, end));
+                arcTo(RING_INNER, end, -RING_SWEEP);
+                path.close();
+
+                // and the arrow head at its end
+                path.moveTo(xAt(ARROW_INNER, end), yAt(ARROW_INNER, end));
+                path.lineTo(xAt(ARROW_OUTER, end), yAt(ARROW_OUTER, end));
+                float middle = (RING_INNER + RING_OUTER) / 2.0F;
+                path.lineTo(xAt(middle, ARROW_TIP), yAt(middle, ARROW_TIP));
+                path.close();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Overridden Drawable method that draws the glyph & its outline
+     *
+     * @param canvas the canvas to draw on
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        canvas.drawPath(path, outlinePaint);
+        canvas.drawPath(path, fillPaint);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        fillPaint.setAlpha(alpha);
+        outlinePaint.setAlpha(Color.alpha(OUTLINE_COLOR) * alpha / 255);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        fillPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that adds an arc of a circle around the center of the ring to the path
+     *
+     * @param radius    the radius, in units
+     * @param start     the start angle, in degrees
+     * @param sweep     the sweep angle, in degrees
+     */
+    private void arcTo (float radius, float start, float sweep) {
+        arcRect.set(x(RING_CENTER_X - radius), y(RING_CENTER_Y - radius),
+                x(RING_CENTER_X + radius), y(RING_CENTER_Y + radius));
+        path.arcTo(arcRect, start, sweep, false);
+    }
+
+    /**
+     * Method that returns the x position of a point on a circle around the center of the ring
+     *
+     * @param radius    the radius, in units
+     * @param angle     the angle, in degrees
+     * @return          the x position, in pixels
+     */
+    private float xAt (float radius, float angle) {
+        return x(RING_CENTER_X + radius * (float) Math.cos(Math.toRadians(angle)));
+    }
+
+    /**
+     * Method that returns the y position of a point on a circle around the center of the ring
+     *
+     * @param radius    the radius, in units
+     * @param angle     the angle, in degrees
+     * @return          the y position, in pixels
+     */
+    private float yAt (float radius, float angle) {
+        return y(RING_CENTER_Y + radius * (float) Math.sin(Math.toRadians(angle)));
+    }
+
+    /**
+     * Method that converts an x position from units to pixels
+     *
+     * @param units the x position, in units
+     * @return      the x position, in pixels
+     */
+    private float x (float units) {
+        return left + units * scale;
+    }
+
+    /**
+     * Method that converts a y position from units to pixels
+     *
+     * @param units the y position, in units
+     * @return      the y position, in pixels
+     */
+    private float y (float units) {
+        return top + units * scale;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.image;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Drawable that draws the built-in gradient that covers the bottom part of the video: black,
+ * going from almost transparent at the top to almost opaque at the bottom, the same as the
+ * built-in bitmap did. It's a shader laid out for the bounds, so it's smooth at any size and
+ * costs nothing to decode or keep in memory.
+ */
+public class SimplexGradientDrawable extends Drawable {
+
+    // the colors at the top & bottom of the gradient
+    private static final int    TOP_COLOR       = 0x14000000;
+    private static final int    BOTTOM_COLOR    = 0xF6000000;
+
+    // the built-in bitmap had a row of pixels per step; its colors are at the middle of each
+    private static final int    STEPS           = 8;
+
+    // the paint that holds the gradient
+    private Paint               paint           = new Paint();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Drawable
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Overridden Drawable method that lays the gradient out again for the new bounds
+     *
+     * @param bounds the new bounds
+     */
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        float step = bounds.height() / (float) STEPS;
+        paint.setShader(new LinearGradient(0, bounds.top + step / 2.0F, 0, bounds.bottom - step / 2.0F,
+                TOP_COLOR, BOTTOM_COLOR, Shader.TileMode.CLAMP));
+    }
+
+    /**
+     * Overridden Drawable method that draws the gradient
+     *
+     * @param canvas the canvas to draw on
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        canvas.drawRect(bounds.left, bounds.top, bounds.right, bounds.bottom, paint);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import java.util.Arrays;
+
+/**
+ * Class that holds the times of all the sync samples (key frames) of a video track, in
+ * ascending order, and can snap any time to the nearest of them
+ */
+public class SimplexKeyframeIndex {
+
+    // key frame times, in milliseconds, in ascending order
+    private long[] times;
+
+    // whether every sample of the track is a key frame
+    private boolean allSync;
+
+    /**
+     * Constructor with the key frame times
+     *
+     * @param times   key frame times, in milliseconds, in ascending order
+     * @param allSync true if every sample is a key frame (in which case times can be empty)
+     */
+    public SimplexKeyframeIndex(long[] times, boolean allSync) {
+        this.times = times != null ? times : new long[0];
+        this.allSync = allSync;
+    }
+
+    /**
+     * Method that snaps a time to the nearest key frame
+     *
+     * @param millis a time in milliseconds
+     * @return       the time of the nearest key frame, or the same time if every sample is a
+     *               key frame or there are no key frames
+     */
+    public long snap(long millis) {
+
+        if (allSync || times.length == 0) return millis;
+
+        int index = Arrays.binarySearch(times, millis);
+        if (index >= 0) return times[index];
+
+        int after = -index - 1;
+        if (after == 0) return times[0];
+        if (after == times.length) return times[times.length - 1];
+
+        long before = times[after - 1];
+        long next = times[after];
+        return millis - before <= next - millis ? before : next;
+    }
+
+    /**
+     * Method that returns the last key frame at or before a time
+     *
+     * @param millis a time in milliseconds
+     * @return       the time of the key frame, or the same time if every sample is a
+     *               key frame or there are no key frames
+     */
+    public long floor(long millis) {
+
+        if (allSync || times.length == 0) return millis;
+
+        int index = Arrays.binarySearch(times, millis);
+        if (index >= 0) return times[index];
+
+        int after = -index - 1;
+        return after == 0 ? times[0] : times[after - 1];
+    }
+
+    /**
+     * Getter for the number of key frames
+     *
+     * @return number of key frames
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Getter for a key frame time
+     *
+     * @param index index of the key frame
+     * @return      its time in milliseconds
+     */
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Getter for whether every sample of the track is a key frame
+     *
+     * @return true or false
+     */
+    public boolean isAllSync() {
+        return allSync;
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Aux class that walks the boxes of an MP4 / ISO-BMFF file (moov / trak / mdia / minf / stbl)
+ * and builds the key frame index of its first video track from the "stss" (sync samples) and
+ * "stts" (sample durations) tables.
+ * It only reads box headers and the two tables, through a small reusable buffer, so it doesn't
+ * need to load the file (or even the whole "moov" box) in memory. It's plain Java, with no
+ * Android dependencies.
+ */
+public class SimplexMp4Parser {
+
+    // box types
+    private static final int MOOV = fourcc("moov");
+    private static final int TRAK = fourcc("trak");
+    private static final int MDIA = fourcc("mdia");
+    private static final int MDHD = fourcc("mdhd");
+    private static final int HDLR = fourcc("hdlr");
+    private static final int MINF = fourcc("minf");
+    private static final int STBL = fourcc("stbl");
+    private static final int STTS = fourcc("stts");
+    private static final int STSS = fourcc("stss");
+    private static final int VIDE = fourcc("vide");
+
+    // size of the buffer used to read the file
+    private static final int BUFFER_SIZE = 8192;
+
+    // the file being parsed & its reader
+    private BoxReader reader;
+    private long      length;
+
+    // state of the track being parsed
+    private long      timescale;
+    private int       handler;
+    private long      sttsPosition;
+    private long      sttsEnd;
+    private long      stssPosition;
+    private long      stssEnd;
+
+    /**
+     * Method that parses a local MP4 file and builds the key frame index of its first
+     * video track
+     *
+     * @param file          the file to parse
+     * @return              the key frame index, or null if the file has no video track
+     * @throws IOException  if the file can't be read or is not a valid MP4 file
+     */
+    public static SimplexKeyframeIndex parseKeyframes (File file) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            SimplexMp4Parser parser = new SimplexMp4Parser(raf);
+            return parser.parse();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Private constructor with the file to parse
+     *
+     * @param file          an open file
+     * @throws IOException  if the file length can't be read
+     */
+    private SimplexMp4Parser (RandomAccessFile file) throws IOException {
+        reader = new BoxReader(file);
+        length = file.length();
+    }
+
+    /**
+     * Method that finds the "moov" box and parses its tracks until it finds a video track
+     *
+     * @return              the key frame index, or null if there is no video track
+     * @throws IOException  if the file can't be read
+     */
+    private SimplexKeyframeIndex parse () throws IOException {
+
+        long moov = findBox(0, length, MOOV);
+        if (moov < 0) {
+            throw new IOException("No moov box found");
+        }
+
+        long position = reader.contentStart;
+        long end = reader.boxEnd;
+
+        while (position < end) {
+
+            readBoxHeader(position, end);
+            long next = reader.boxEnd;
+
+            if (reader.boxType == TRAK) {
+                SimplexKeyframeIndex index = parseTrack(reader.contentStart, next);
+                if (index != null) return index;
+            }
+
+            position = next;
+        }
+
+        return null;
+    }
+
+    /**
+     * Method that parses a "trak" box
+     *
+     * @param start         start of the box contents
+     * @param end           end of the box
+     * @return              the key frame index if it's a video track, null otherwise
+     * @throws IOException  if the file can't be read
+     */
+    private SimplexKeyframeIndex parseTrack (long start, long end) throws IOException {
+
+        timescale = 0;
+        handler = 0;
+        sttsPosition = -1;
+        stssPosition = -1;
+
+        if (findBox(start, end, MDIA) < 0) return null;
+        long mdiaStart = reader.contentStart;
+        long mdiaEnd = reader.boxEnd;
+
+        // media header: the time scale of the track
+        if (findBox(mdiaStart, mdiaEnd, MDHD) >= 0) {
+            reader.seek(reader.contentStart);
+            int version = reader.readInt() >>> 24;
+            if (version == 1) {
+                reader.skip(16);
+            } else {
+                reader.skip(8);
+            }
+            timescale = reader.readUnsignedInt();
+        }
+
+        // handler: the type of the track
+        if (findBox(mdiaStart, mdiaEnd, HDLR) >= 0) {
+            reader.seek(reader.contentStart + 8);
+            handler = reader.readInt();
+        }
+
+        if (handler != VIDE || timescale <= 0) return null;
+
+        // sample tables
+        if (findBox(mdiaStart, mdiaEnd, MINF) < 0) return null;
+        if (findBox(reader.contentStart, reader.boxEnd, STBL) < 0) return null;
+        long stblStart = reader.contentStart;
+        long stblEnd = reader.boxEnd;
+
+        if (findBox(stblStart, stblEnd, STTS) >= 0) {
+            sttsPosition = reader.contentStart;
+            sttsEnd = reader.boxEnd;
+        }
+        if (findBox(stblStart, stblEnd, STSS) >= 0) {
+            stssPosition = reader.contentStart;
+            stssEnd = reader.boxEnd;
+        }
+
+        // without a sync sample table, every sample is a key frame
+        if (stssPosition < 0) {
+            return new SimplexKeyframeIndex(null, true);
+        }
+
+        if (sttsPosition < 0) {
+            throw new IOException("No stts box found");
+        }
+
+        return buildIndex();
+    }
+
+    /**
+     * Method that computes the time of every sync sample, by walking the "stss" table and
+     * accumulating the sample durations from the "stts" table
+     *
+     * @return              the key frame index
+     * @throws IOException  if the file can't be read
+     */
+    private SimplexKeyframeIndex buildIndex () throws IOException {
+
+        // read the (usually very short) time to sample table
+        reader.seek(sttsPosition + 4);
+        int sttsCount = checkCount(reader.readUnsignedInt(), sttsEnd - sttsPosition - 8, 8);
+        long[] sampleCounts = new long[sttsCount];
+        long[] sampleDeltas = new long[sttsCount];
+        for (int i = 0; i < sttsCount; i++) {
+            sampleCounts[i] = reader.readUnsignedInt();
+            sampleDeltas[i] = reader.readUnsignedInt();
+        }
+
+        // and walk the sync sample table
+        reader.seek(stssPosition + 4);
+        int stssCount = checkCount(reader.readUnsignedInt(), stssEnd - stssPosition - 8, 4);
+        long[] times = new long[stssCount];
+
+        int entry = 0;
+        long entryFirstSample = 1;
+        long entryTime = 0;
+
+        for (int i = 0; i < stssCount; i++) {
+
+            long sample = reader.readUnsignedInt();
+
+            // advance to the stts entry that contains this sample
+            while (entry < sttsCount && sample >= entryFirstSample + sampleCounts[entry]) {
+                entryTime += sampleCounts[entry] * sampleDeltas[entry];
+                entryFirstSample += sampleCounts[entry];
+                entry++;
+            }
+
+            long time = entry < sttsCount ?
+                    entryTime + (sample - entryFirstSample) * sampleDeltas[entry] :
+                    entryTime;
+
+            times[i] = time * 1000 / timescale;
+        }
+
+        return new SimplexKeyframeIndex(times, false);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Box navigation
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that finds the first box of a certain type between two positions. When found,
+     * the reader's box fields describe it.
+     *
+     * @param start         position to start looking from
+     * @param end           position to stop looking at
+     * @param type          the box type
+     * @return              the position of the box, or -1 if not found
+     * @throws IOException  if the file can't be read
+     */
+    private long findBox (long start, long end, int type) throws IOException {
+
+        long position = start;
+
+        while (position + 8 <= end) {
+            readBoxHeader(position, end);
+            if (reader.boxType == type) return position;
+            position = reader.boxEnd;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Method that reads the header of the box at a certain position
+     *
+     * @param position      position of the box
+     * @param parentEnd     end of the parent box
+     * @throws IOException  if the file can't be read or the box is invalid
+     */
+    private void readBoxHeader (long position, long parentEnd) throws IOException {
+
+        reader.seek(position);
+        long size = reader.readUnsignedInt();
+        int type = reader.readInt();
+        long header = 8;
+
+        if (size == 1) {
+            size = reader.readLong();
+            header = 16;
+        } else if (size == 0) {
+            size = parentEnd - position;
+        }
+
+        if (size < header || position + size > parentEnd) {
+            throw new IOException("Invalid box size " + size + " at " + position);
+        }
+
+        reader.boxType = type;
+        reader.contentStart = position + header;
+        reader.boxEnd = position + size;
+    }
+
+    /**
+     * Method that checks that a table entry count fits in the box it's in
+     *
+     * @param count         the entry count
+     * @param available     number of bytes available for entries
+     * @param entrySize     size of an entry
+     * @return              the count
+     * @throws IOException  if the count doesn't fit
+     */
+    private static int checkCount (long count, long available, int entrySize) throws IOException {
+        if (count < 0 || count * entrySize > available) {
+            throw new IOException("Invalid table entry count " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Method that turns a four character code into an int
+     *
+     * @param code four characters
+     * @return     the int value
+     */
+    private static int fourcc (String code) {
+        return (code.charAt(0) << 24) | (code.charAt(1) << 16) | (code.charAt(2) << 8) | code.charAt(3);
+    }
+
+    /**
+     * Small buffered reader over a random access file, that reads big-endian values and
+     * remembers the last box header it read
+     */
+    private static class BoxReader {
+
+        private RandomAccessFile file;
+        private byte[]           buffer      = new byte[BUFFER_SIZE];
+        private long             bufferStart = 0;
+        private int              bufferLength = 0;
+        private long             position    = 0;
+
+        // last box header read
+        private int              boxType;
+        private long             contentStart;
+        private long             boxEnd;
+
+        BoxReader (RandomAccessFile file) {
+            this.file = file;
+        }
+
+        void seek (long position) {
+            this.position = position;
+        }
+
+        void skip (long bytes) {
+            position += bytes;
+        }
+
+        int readInt () throws IOException {
+            fill(4);
+            int offset = (int) (position - bufferStart);
+            position += 4;
+            return ((buffer[offset] & 0xFF) << 24) |
+                    ((buffer[offset + 1] & 0xFF) << 16) |
+                    ((buffer[offset + 2] & 0xFF) << 8) |
+                    (buffer[offset + 3] & 0xFF);
+        }
+
+        long readUnsignedInt () throws IOException {
+            return readInt() & 0xFFFFFFFFL;
+        }
+
+        long readLong () throws IOException {
+            return (readUnsignedInt() << 32) | readUnsignedInt();
+        }
+
+        private void fill (int bytes) throws IOException {
+
+            // already in the buffer
+            if (position >= bufferStart && position + bytes <= bufferStart + bufferLength) return;
+
+            file.seek(position);
+            bufferStart = position;
+            bufferLength = 0;
+
+            while (bufferLength < buffer.length) {
+                int read = file.read(buffer, bufferLength, buffer.length - bufferLength);
+                if (read < 0) break;
+                bufferLength += read;
+            }
+
+            if (bufferLength < bytes) {
+                throw new EOFException();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+/**
+ * Class that represents one rendition of a media: a URL or file name, together with the
+ * resolution and bitrate it's been encoded at
+ */
+public class SimplexRendition {
+
+    // the URL or file name of the rendition
+    private String  mediaName;
+
+    // its resolution in pixels (0 if not known) & bitrate in bits per second (0 if not known)
+    private int     width   = 0;
+    private int     height  = 0;
+    private long    bitrate = 0;
+
+    /**
+     * Constructor with all the member variables
+     *
+     * @param mediaName URL or file name
+     * @param width     width in pixels, or 0 if not known
+     * @param height    height in pixels, or 0 if not known
+     * @param bitrate   bitrate in bits per second, or 0 if not known
+     */
+    public SimplexRendition(String mediaName, int width, int height, long bitrate) {
+        this.mediaName = mediaName;
+        this.width = width;
+        this.height = height;
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * Method that checks whether the rendition is big enough to fill a view of a certain size
+     * without being scaled up. Since the video is scaled to fit inside the view, it's enough
+     * for either of its sides to reach the view's.
+     *
+     * @param viewWidth     width of the view in pixels
+     * @param viewHeight    height of the view in pixels
+     * @return              true if it covers the view, or if its resolution is not known
+     */
+    public boolean covers(int viewWidth, int viewHeight) {
+        return width <= 0 || height <= 0 || width >= viewWidth || height >= viewHeight;
+    }
+
+    /**
+     * Getter for the URL or file name
+     *
+     * @return the URL or file name
+     */
+    public String getMediaName() {
+        return mediaName;
+    }
+
+    /**
+     * Getter for the width
+     *
+     * @return the width in pixels, or 0 if not known
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the height
+     *
+     * @return the height in pixels, or 0 if not known
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Getter for the bitrate
+     *
+     * @return the bitrate in bits per second, or 0 if not known
+     */
+    public long getBitrate() {
+        return bitrate;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class that represents a media that's available in one or more renditions (e.g. 360p, 720p
+ * and 1080p encodes of the same video), and picks the one that best fits the size of the view
+ * it's played in and the bandwidth that's available
+ */
+public class SimplexSource {
+
+    // fraction of the estimated bandwidth a rendition's bitrate can take up
+    private static final float      BANDWIDTH_FRACTION = 0.75F;
+
+    // the renditions, from the smallest to the biggest
+    private List<SimplexRendition>  renditions = new ArrayList<>();
+
+    /**
+     * Constructor for a source with no renditions yet
+     */
+    public SimplexSource() {
+        // do nothing
+    }
+
+    /**
+     * Constructor for a source with a single rendition, of unknown resolution and bitrate
+     *
+     * @param mediaName URL or file name
+     */
+    public SimplexSource(String mediaName) {
+        addRendition(new SimplexRendition(mediaName, 0, 0, 0));
+    }
+
+    /**
+     * Method that adds a rendition to the source
+     *
+     * @param mediaName URL or file name
+     * @param width     width in pixels
+     * @param height    height in pixels
+     * @param bitrate   bitrate in bits per second
+     * @return          this source, so calls can be chained
+     */
+    public SimplexSource addRendition(String mediaName, int width, int height, long bitrate) {
+        return addRendition(new SimplexRendition(mediaName, width, height, bitrate));
+    }
+
+    /**
+     * Method that adds a rendition to the source
+     *
+     * @param rendition a new rendition
+     * @return          this source, so calls can be chained
+     */
+    public SimplexSource addRendition(SimplexRendition rendition) {
+
+        renditions.add(rendition);
+
+        // keep them sorted by size, then bitrate
+        Collections.sort(renditions, new Comparator<SimplexRendition>() {
+            @Override
+            public int compare(SimplexRendition lhs, SimplexRendition rhs) {
+                long lhsArea = (long) lhs.getWidth() * lhs.getHeight();
+                long rhsArea = (long) rhs.getWidth() * rhs.getHeight();
+                if (lhsArea != rhsArea) return lhsArea < rhsArea ? -1 : 1;
+                long lhsBitrate = lhs.getBitrate();
+                long rhsBitrate = rhs.getBitrate();
+                return lhsBitrate < rhsBitrate ? -1 : (lhsBitrate == rhsBitrate ? 0 : 1);
+            }
+        });
+
+        return this;
+    }
+
+    /**
+     * Method that picks the rendition to play in a view of a certain size:
+     * - only renditions whose bitrate fits in the estimated bandwidth are considered (or the
+     *   lowest bitrate one, if none does)
+     * - of those, the smallest one that covers the view wins
+     * - and if none covers the view, the biggest one
+     * An unknown view size or bandwidth doesn't rule anything out.
+     *
+     * @param viewWidth     width of the view in pixels, or 0 if not known
+     * @param viewHeight    height of the view in pixels, or 0 if not known
+     * @param bandwidth     estimated bandwidth in bits per second, or a negative value if not known
+     * @return              the selected rendition, or null if there are none
+     */
+    public SimplexRendition selectRendition(int viewWidth, int viewHeight, long bandwidth) {
+
+        if (renditions.isEmpty()) return null;
+
+        // the renditions that fit in the bandwidth
+        List<SimplexRendition> affordable = new ArrayList<>();
+        SimplexRendition lowest = renditions.get(0);
+
+        for (SimplexRendition rendition : renditions) {
+            if (bandwidth <= 0 || rendition.getBitrate() <= bandwidth * BANDWIDTH_FRACTION) {
+                affordable.add(rendition);
+            }
+            if (rendition.getBitrate() < lowest.getBitrate()) {
+                lowest = rendition;
+            }
+        }
+
+        if (affordable.isEmpty()) return lowest;
+
+        // the smallest of them that covers the view
+        if (viewWidth > 0 && viewHeight > 0) {
+            for (SimplexRendition rendition : affordable) {
+                if (rendition.covers(viewWidth, viewHeight)) return rendition;
+            }
+        }
+
+        // or the biggest
+        return affordable.get(affordable.size() - 1);
+    }
+
+    /**
+     * Getter for the renditions of the source
+     *
+     * @return the renditions, from the smallest to the biggest
+     */
+    public List<SimplexRendition> getRenditions() {
+        return renditions;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that estimates the bandwidth available to the library from the transfers it makes.
+ * Transfers are grouped in samples of at least a certain duration; the estimate is the
+ * median bitrate of the most recent samples, weighted by the square root of their size, so
+ * that a few tiny or stalled transfers don't throw it off.
+ * The last estimate of every network type (e.g. "wifi" or "mobile_LTE") is also kept as
+ * history, which can be saved & restored between sessions, so the first estimate on a
+ * network that's been seen before isn't zero. It's plain Java, with no Android dependencies.
+ */
+public class SimplexBandwidthEstimator {
+
+    // value returned when there's no estimate at all
+    public static final long    NO_ESTIMATE       = -1;
+
+    // network type used when it's not known
+    public static final String  UNKNOWN_NETWORK   = "unknown";
+
+    // minimum duration of a sample, in ns, & number of recent samples the estimate uses
+    private static final long   MIN_SAMPLE_TIME   = 250000000L;
+    private static final int    MAX_SAMPLES       = 20;
+
+    // the current network type & its recent samples
+    private String              networkType       = UNKNOWN_NETWORK;
+    private List<Sample>        samples           = new ArrayList<>();
+
+    // the estimate from the recent samples, worked out whenever they change
+    private long                estimate          = NO_ESTIMATE;
+
+    // bytes & time (in ns) of the sample being gathered
+    private long                sampleBytes       = 0;
+    private long                sampleTime        = 0;
+
+    // last estimate of every network type, in bits per second
+    private Map<String, Long>   history           = new HashMap<>();
+
+    // listener that gets told about new estimates, e.g. to save them
+    private Listener            listener;
+
+    /**
+     * Basic constructor, that just instantiates a new listener
+     */
+    public SimplexBandwidthEstimator () {
+        listener = new Listener() {
+            @Override public void didUpdateEstimate(String networkType, long bitrate) {}};
+    }
+
+    /**
+     * Method that's called whenever part of a transfer is done
+     *
+     * @param bytes number of bytes transferred
+     * @param nanos time it took, in ns
+     */
+    public void onBytesTransferred (long bytes, long nanos) {
+
+        String type;
+        long current;
+
+        synchronized (this) {
+
+            sampleBytes += bytes;
+            sampleTime += nanos;
+
+            // wait for a long enough sample
+            if (sampleTime < MIN_SAMPLE_TIME) return;
+
+            samples.add(new Sample(sampleBytes * 8 * 1000000000L / sampleTime, sampleBytes));
+            if (samples.size() > MAX_SAMPLES) {
+                samples.remove(0);
+            }
+            sampleBytes = 0;
+            sampleTime = 0;
+
+            type = networkType;
+            estimate = computeEstimate();
+            current = estimate;
+            history.put(type, current);
+        }
+
+        listener.didUpdateEstimate(type, current);
+    }
+
+    /**
+     * Method that changes the current network type. Samples from the previous network don't
+     * say anything about the new one, so they're dropped, and the estimate falls back to the
+     * history of the new network until there are new samples.
+     *
+     * @param networkType the new network type
+     */
+    public synchronized void setNetworkType (String networkType) {
+
+        String type = networkType != null ? networkType : UNKNOWN_NETWORK;
+        if (type.equals(this.networkType)) return;
+
+        this.networkType = type;
+        samples.clear();
+        estimate = NO_ESTIMATE;
+        sampleBytes = 0;
+        sampleTime = 0;
+    }
+
+    /**
+     * Getter for the current network type
+     *
+     * @return the network type
+     */
+    public synchronized String getNetworkType () {
+        return networkType;
+    }
+
+    /**
+     * Method that returns the current bandwidth estimate. It's cheap enough (and doesn't
+     * allocate anything) to be called on every frame.
+     *
+     * @return the estimate in bits per second, or NO_ESTIMATE if there's none yet
+     */
+    public synchronized long getEstimate () {
+
+        if (!samples.isEmpty()) {
+            return estimate;
+        }
+
+        Long previous = history.get(networkType);
+        return previous != null ? previous : NO_ESTIMATE;
+    }
+
+    /**
+     * Method that restores the last estimate of a network type, e.g. from a previous session
+     *
+     * @param networkType   the network type
+     * @param bitrate       its last estimate, in bits per second
+     */
+    public synchronized void restoreEstimate (String networkType, long bitrate) {
+        if (networkType != null && bitrate > 0 && !history.containsKey(networkType)) {
+            history.put(networkType, bitrate);
+        }
+    }
+
+    /**
+     * Method that sets a new value for the listener
+     *
+     * @param listener a new listener instance
+     */
+    public void setListener (Listener listener) {
+        this.listener = listener != null ? listener : this.listener;
+    }
+
+    /**
+     * Method that computes the weighted median bitrate of the recent samples
+     *
+     * @return the median in bits per second
+     */
+    private long computeEstimate () {
+
+        List<Sample> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted, new Comparator<Sample>() {
+            @Override
+            public int compare(Sample lhs, Sample rhs) {
+                return lhs.bitrate < rhs.bitrate ? -1 : (lhs.bitrate == rhs.bitrate ? 0 : 1);
+            }
+        });
+
+        double totalWeight = 0;
+        for (Sample sample : sorted) {
+            totalWeight += sample.weight;
+        }
+
+        double weight = 0;
+        for (Sample sample : sorted) {
+            weight += sample.weight;
+            if (weight >= totalWeight / 2) {
+                return sample.bitrate;
+            }
+        }
+
+        return sorted.get(sorted.size() - 1).bitrate;
+    }
+
+    /**
+     * Class that holds a single sample
+     */
+    private static class Sample {
+
+        private long    bitrate;
+        private double  weight;
+
+        Sample (long bitrate, long bytes) {
+            this.bitrate = bitrate;
+            this.weight = Math.sqrt(bytes);
+        }
+    }
+
+    /**
+     * Listener that gets told about every new estimate
+     */
+    public interface Listener {
+
+        /**
+         * Called when there's a new estimate for a network type
+         *
+         * @param networkType   the network type
+         * @param bitrate       the estimate, in bits per second
+         */
+        void didUpdateEstimate (String networkType, long bitrate);
+    }
+}
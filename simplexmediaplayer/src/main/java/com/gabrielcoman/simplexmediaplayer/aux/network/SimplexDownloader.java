@@ -0,0 +1,887 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.network;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that downloads a remote media to a file over several parallel connections.
+ * The media is split into fixed-size chunks, fetched with range requests by a few worker
+ * threads, and written in place (with positional writes) into a file that's preallocated to
+ * the full length of the media. Finished chunks are recorded in a small state file next to
+ * it, so a download that got interrupted (even by the process dying) resumes from where it
+ * was left by just starting a new downloader for the same url and file.
+ * The media can also be read while it's being downloaded (e.g. played through the cache
+ * proxy): reads only block when they get ahead of what's been written, the chunk a read is
+ * waiting for is fetched first, and the other connections hold off until it's there, so it
+ * gets all the bandwidth.
+ * Servers that don't support range requests get downloaded over a single connection, from
+ * the start. It's plain Java, with no Android dependencies.
+ */
+public class SimplexDownloader {
+
+    // default number of parallel connections
+    public static final int         DEFAULT_CONNECTIONS = 4;
+
+    // size of the chunks the media is split into, in bytes
+    private static final int        CHUNK_SIZE      = 1024 * 1024;
+
+    // size of the buffer network data gets read into
+    private static final int        BUFFER_SIZE     = 16 * 1024;
+
+    // times a chunk is tried before the download fails
+    private static final int        MAX_ATTEMPTS    = 3;
+
+    // network timeouts, in ms
+    private static final int        CONNECT_TIMEOUT = 10000;
+    private static final int        READ_TIMEOUT    = 15000;
+
+    // suffixes of the file being downloaded & of its state file
+    private static final String     PART_SUFFIX     = ".part";
+    private static final String     STATE_SUFFIX    = ".state";
+    private static final String     TEMP_SUFFIX     = ".tmp";
+
+    // state file header
+    private static final int        STATE_MAGIC     = 0x53584431;
+    private static final int        STATE_VERSION   = 1;
+
+    private static final Pattern    CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    // the remote media, the file it ends up in & the files used while downloading
+    private String                  url;
+    private File                    target;
+    private File                    partFile;
+    private File                    stateFile;
+
+    // number of parallel connections
+    private int                     connections     = DEFAULT_CONNECTIONS;
+
+    // total length of the media, or -1 if not known, & whether the server supports ranges
+    private long                    length          = -1;
+    private boolean                 isRanged        = false;
+
+    // chunks that are on disk & chunks a worker is fetching
+    private BitSet                  chunks          = new BitSet();
+    private BitSet                  claimed         = new BitSet();
+
+    // threads fetching chunks first for reads, that the download hasn't waited for yet
+    private List<Thread>            firstFetchers   = new ArrayList<>();
+
+    // bytes written from the start of every chunk, the chunk a read is waiting for (if one
+    // is waiting) & the chunk the last read was in
+    private long[]                  filled          = new long[0];
+    private int                     waitingChunk    = -1;
+    private int                     readChunk       = 0;
+
+    // the file being downloaded, while it's open
+    private RandomAccessFile        fileAccess      = null;
+    private FileChannel             fileChannel     = null;
+
+    // whether the download has been cancelled, a chunk has failed for good, or it's over
+    private volatile boolean        isCancelled     = false;
+    private volatile boolean        isFailed        = false;
+    private volatile boolean        isFinished      = false;
+
+    // optional estimator fed with every transfer
+    private SimplexBandwidthEstimator estimator     = null;
+
+    // listener
+    private Listener                listener;
+
+    /**
+     * Constructor with the media url and the file it should be downloaded to
+     *
+     * @param url       the remote media url
+     * @param target    the file to download it to
+     */
+    public SimplexDownloader (String url, File target) {
+        this.url = url;
+        this.target = target;
+        this.partFile = new File(target.getPath() + PART_SUFFIX);
+        this.stateFile = new File(target.getPath() + STATE_SUFFIX);
+
+        listener = new Listener() {
+            @Override public void didDownload(File file) {}
+            @Override public void didFail() {}};
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Download
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that starts downloading on a background thread. If the file is already there,
+     * the listener's "didDownload" gets called right away (on that thread too).
+     */
+    public void start () {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                download();
+            }
+        }, "SimplexDownloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Method that stops the download. What's been downloaded so far is kept, so a new
+     * downloader for the same url and file picks up from there.
+     */
+    public synchronized void cancel () {
+        isCancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Method that runs the whole download and tells the listener how it went
+     */
+    private void download () {
+
+        if (target.exists()) {
+            synchronized (this) {
+                setLength(target.length());
+                chunks.set(0, chunkCount());
+                isFinished = true;
+            }
+            listener.didDownload(target);
+            return;
+        }
+
+        boolean isComplete = false;
+
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            target.getParentFile().mkdirs();
+
+            // ask for the first byte, to learn the length & whether ranges are supported
+            HttpURLConnection probe = openConnection(0, 0);
+            try {
+                int code = probe.getResponseCode();
+
+                if (code == 206) {
+                    long total = totalLength(probe);
+                    probe.disconnect();
+                    probe = null;
+                    if (total <= 0) throw new IOException("Unknown length for " + url);
+
+                    isRanged = true;
+                    openFile(total);
+                    downloadChunks();
+                } else if (code == 200) {
+                    // no ranges, so the whole media comes through the probe
+                    openFile(contentLength(probe));
+                    downloadStream(probe);
+                } else {
+                    throw new IOException("Unexpected response " + code + " for " + url);
+                }
+            } finally {
+                if (probe != null) probe.disconnect();
+            }
+
+            isComplete = !isCancelled && !isFailed;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeFile();
+        }
+
+        boolean isDownloaded = isComplete && partFile.renameTo(target);
+        if (isDownloaded) {
+            //noinspection ResultOfMethodCallIgnored
+            stateFile.delete();
+        }
+
+        // wake up any reads still waiting
+        synchronized (this) {
+            isFailed = isFailed || !isDownloaded;
+            isFinished = true;
+            notifyAll();
+        }
+
+        if (isCancelled) return;
+
+        if (isDownloaded) {
+            listener.didDownload(target);
+        } else {
+            listener.didFail();
+        }
+    }
+
+    /**
+     * Method that opens the file being downloaded, picking up the state of a previous
+     * download of the same media if there's one, or starting over and preallocating it
+     *
+     * @param total         the total length of the media, or -1 if not known
+     * @throws IOException  if the file can't be opened
+     */
+    private void openFile (long total) throws IOException {
+
+        if (total <= 0 || !partFile.exists() || !loadState(total)) {
+            //noinspection ResultOfMethodCallIgnored
+            partFile.delete();
+            //noinspection ResultOfMethodCallIgnored
+            stateFile.delete();
+            chunks.clear();
+        }
+
+        fileAccess = new RandomAccessFile(partFile, "rw");
+        fileChannel = fileAccess.getChannel();
+
+        if (total > 0 && fileAccess.length() != total) {
+            fileAccess.setLength(total);
+        }
+
+        // reads can start from here on
+        setLength(total);
+    }
+
+    /**
+     * Method that sets the total length of the media, once it's known, and wakes up reads
+     * waiting for it
+     *
+     * @param total the total length of the media, or -1 if not known
+     */
+    private synchronized void setLength (long total) {
+        length = total;
+        filled = new long[chunkCount()];
+        notifyAll();
+    }
+
+    /**
+     * Method that closes the file being downloaded, if it's open
+     */
+    private void closeFile () {
+        try {
+            if (fileAccess != null) fileAccess.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        fileAccess = null;
+        fileChannel = null;
+    }
+
+    /**
+     * Method that downloads all the missing chunks over several parallel connections, and
+     * returns once they're all done, or the download has failed or been cancelled. Either way,
+     * it only returns once no thread is writing to the file anymore, including those fetching
+     * chunks first for reads.
+     */
+    private void downloadChunks () {
+
+        int count = Math.max(1, Math.min(connections, chunkCount() - chunks.cardinality()));
+        Thread[] workers = new Thread[count];
+
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    fetchChunks();
+                }
+            }, "SimplexDownloader-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            // the workers are done once every chunk is on disk or claimed, but chunks fetched
+            // first for reads may still be coming in
+            Thread fetcher;
+            while ((fetcher = nextFirstFetcher()) != null) {
+                fetcher.join();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (chunks.cardinality() < chunkCount()) {
+            isFailed = true;
+        }
+    }
+
+    /**
+     * Method run by every worker: it keeps claiming missing chunks and fetching them, each
+     * with a few attempts, until there are none left
+     */
+    private void fetchChunks () {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int chunk;
+        while ((chunk = claimChunk()) >= 0) {
+            fetchChunkWithRetries(chunk, buffer);
+        }
+    }
+
+    /**
+     * Method that fetches a claimed chunk, with a few attempts, and records how it went
+     *
+     * @param chunk     the chunk
+     * @param buffer    buffer to read network data into
+     */
+    private void fetchChunkWithRetries (int chunk, byte[] buffer) {
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !isCancelled; attempt++) {
+            try {
+                fetchChunk(chunk, buffer);
+                didFetchChunk(chunk);
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized (this) {
+            isFailed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Method that claims the first chunk, from the one last read onwards (or else from the
+     * start), that's neither on disk nor being fetched
+     *
+     * @return the chunk, or -1 if there are none left or the download should stop
+     */
+    private synchronized int claimChunk () {
+
+        if (isCancelled || isFailed) return -1;
+
+        int chunk = findUnclaimedChunk(readChunk);
+        if (chunk < 0) {
+            chunk = findUnclaimedChunk(0);
+        }
+
+        if (chunk >= 0) {
+            claimed.set(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Method that finds the first chunk from a given one onwards that's neither on disk nor
+     * being fetched
+     *
+     * @param from  the chunk to start from
+     * @return      the chunk, or -1 if there is none
+     */
+    private int findUnclaimedChunk (int from) {
+
+        int chunk = chunks.nextClearBit(from);
+        while (chunk < chunkCount() && claimed.get(chunk)) {
+            chunk = chunks.nextClearBit(chunk + 1);
+        }
+
+        return chunk < chunkCount() ? chunk : -1;
+    }
+
+    /**
+     * Method that claims a chunk a read is waiting for and fetches it on a thread of its own,
+     * so the read doesn't have to wait for a worker to get to it
+     *
+     * @param chunk the chunk
+     */
+    private synchronized void fetchFirst (final int chunk) {
+
+        claimed.set(chunk);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fetchChunkWithRetries(chunk, new byte[BUFFER_SIZE]);
+            }
+        }, "SimplexDownloader-" + chunk);
+        thread.setDaemon(true);
+        thread.start();
+
+        firstFetchers.add(thread);
+    }
+
+    /**
+     * Method that returns one of the threads fetching chunks first for reads that the
+     * download hasn't waited for yet, and forgets it
+     *
+     * @return the thread, or null if there are none left
+     */
+    private synchronized Thread nextFirstFetcher () {
+        return firstFetchers.isEmpty() ? null : firstFetchers.remove(firstFetchers.size() - 1);
+    }
+
+    /**
+     * Method that records a chunk as being on disk, so it survives restarts, and wakes up
+     * workers that were holding off for it
+     *
+     * @param chunk the chunk
+     */
+    private synchronized void didFetchChunk (int chunk) {
+        claimed.clear(chunk);
+        chunks.set(chunk);
+        persistState();
+        notifyAll();
+    }
+
+    /**
+     * Method that fetches a single chunk with a range request and writes it in place
+     *
+     * @param chunk         the chunk
+     * @param buffer        buffer to read network data into
+     * @throws IOException  if the network or the file fails, or the download gets cancelled
+     */
+    private void fetchChunk (int chunk, byte[] buffer) throws IOException {
+
+        long start = (long) chunk * CHUNK_SIZE;
+        long end = Math.min(start + CHUNK_SIZE, length) - 1;
+
+        HttpURLConnection connection = openConnection(start, end);
+        try {
+            int code = connection.getResponseCode();
+            if (code != 206) {
+                throw new IOException("Unexpected response " + code + " for chunk " + chunk + " of " + url);
+            }
+
+            long written = copyToFile(connection.getInputStream(), buffer, chunk, start, end - start + 1);
+            if (written < end - start + 1) {
+                throw new IOException("Chunk " + chunk + " of " + url + " ended early");
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Method that downloads the whole media over a single connection, for servers that
+     * don't support range requests
+     *
+     * @param connection    the connection the media is coming through
+     * @throws IOException  if the network or the file fails, or the media ends early
+     */
+    private void downloadStream (HttpURLConnection connection) throws IOException {
+
+        long written = copyToFile(connection.getInputStream(), new byte[BUFFER_SIZE], -1, 0, length > 0 ? length : Long.MAX_VALUE);
+
+        if (length > 0 && written < length) {
+            throw new IOException(url + " ended early");
+        }
+
+        // the length is only known now, as is the whole media
+        if (length <= 0) {
+            fileAccess.setLength(written);
+            synchronized (this) {
+                setLength(written);
+                chunks.set(0, chunkCount());
+            }
+        }
+    }
+
+    /**
+     * Method that copies network data into the file, at a given position. Before every read,
+     * the copy holds off while a read is waiting for another chunk.
+     *
+     * @param in            the network input
+     * @param buffer        buffer to read network data into
+     * @param chunk         the chunk being copied, or -1 for the whole media
+     * @param position      the position to write the data at
+     * @param count         the maximum number of bytes to copy
+     * @return              the number of bytes copied
+     * @throws IOException  if the network or the file fails, or the download gets cancelled
+     */
+    private long copyToFile (InputStream in, byte[] buffer, int chunk, long position, long count) throws IOException {
+
+        long copied = 0;
+
+        while (copied < count) {
+
+            if (chunk >= 0) awaitTurn(chunk);
+            if (isCancelled) throw new InterruptedIOException("Download of " + url + " cancelled");
+
+            long time = System.nanoTime();
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - copied));
+            if (read < 0) break;
+
+            if (estimator != null && read > 0) {
+                estimator.onBytesTransferred(read, System.nanoTime() - time);
+            }
+
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+            while (data.hasRemaining()) {
+                fileChannel.write(data, position + copied + data.position());
+            }
+            didWrite(position + copied, read);
+            copied += read;
+        }
+
+        return copied;
+    }
+
+    /**
+     * Method that blocks a worker while a read is waiting for a chunk that another one is
+     * fetching
+     *
+     * @param chunk                     the chunk the worker is fetching
+     * @throws InterruptedIOException   if the thread gets interrupted while waiting
+     */
+    private synchronized void awaitTurn (int chunk) throws InterruptedIOException {
+
+        while (waitingChunk >= 0 && waitingChunk != chunk && claimed.get(waitingChunk) && !isCancelled && !isFailed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for a read");
+            }
+        }
+    }
+
+    /**
+     * Method that records data written to the file, and wakes up reads waiting for it
+     *
+     * @param position  the position the data was written at
+     * @param count     the number of bytes written
+     */
+    private synchronized void didWrite (long position, long count) {
+
+        if (length <= 0) return;
+
+        // every chunk is written from its start onwards
+        long end = position + count;
+        for (int chunk = (int) (position / CHUNK_SIZE); chunk < chunkCount() && (long) chunk * CHUNK_SIZE < end; chunk++) {
+            long chunkStart = (long) chunk * CHUNK_SIZE;
+            long chunkEnd = Math.min(chunkStart + CHUNK_SIZE, length);
+            filled[chunk] = Math.max(filled[chunk], Math.min(end, chunkEnd) - chunkStart);
+        }
+
+        notifyAll();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Reading
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that blocks until the total length of the media is known
+     *
+     * @return              the total length
+     * @throws IOException  if the download stops before that
+     */
+    public synchronized long awaitLength () throws IOException {
+
+        while (length < 0) {
+            if (isFinished || isCancelled) throw new IOException("Download of " + url + " stopped");
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for " + url);
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Method that blocks until the byte at a position of the media is in the file. The chunk
+     * it's in gets fetched first if no one's fetching it yet, and the chunks after it are the
+     * next ones the workers claim.
+     *
+     * @param position      a position in the media, below its total length
+     * @return              the (exclusive) end of the data that's in the file from there on
+     * @throws IOException  if the download stops before the byte is there
+     */
+    public synchronized long awaitData (long position) throws IOException {
+
+        int chunk = (int) (position / CHUNK_SIZE);
+        readChunk = chunk;
+
+        try {
+            while (true) {
+
+                long end = findDataEnd(position);
+                if (end > position) return end;
+
+                if (isFailed || isCancelled || isFinished) {
+                    throw new IOException("Download of " + url + " stopped");
+                }
+
+                if (isRanged && !claimed.get(chunk)) {
+                    fetchFirst(chunk);
+                }
+
+                waitingChunk = chunk;
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        } finally {
+            if (waitingChunk == chunk) {
+                waitingChunk = -1;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Method that opens the file the media is being downloaded to, for reading. It stays
+     * valid after the download finishes and the file gets its final name.
+     *
+     * @return              a channel to read the file through, to be closed by the caller
+     * @throws IOException  if the file can't be opened
+     */
+    public FileChannel openForReading () throws IOException {
+        try {
+            return new RandomAccessFile(target.exists() ? target : partFile, "r").getChannel();
+        } catch (FileNotFoundException e) {
+            // it just got its final name
+            return new RandomAccessFile(target, "r").getChannel();
+        }
+    }
+
+    /**
+     * Method that finds where the data that's in the file from a position on ends
+     *
+     * @param position  a position in the media
+     * @return          the (exclusive) end of the data, or the position itself if there's none
+     */
+    private long findDataEnd (long position) {
+
+        long end = position;
+
+        for (int chunk = (int) (position / CHUNK_SIZE); chunk < chunkCount(); chunk++) {
+            long chunkStart = (long) chunk * CHUNK_SIZE;
+            long chunkEnd = chunks.get(chunk) ? Math.min(chunkStart + CHUNK_SIZE, length) : chunkStart + filled[chunk];
+            if (chunkEnd <= end) break;
+
+            end = chunkEnd;
+            if (!chunks.get(chunk)) break;
+        }
+
+        return end;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // State
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that loads the state of a previous download of the same media
+     *
+     * @param total the total length of the media now
+     * @return      true if there's a state that matches, false otherwise
+     */
+    private boolean loadState (long total) {
+
+        if (!stateFile.exists()) return false;
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(stateFile));
+            try {
+                if (in.readInt() != STATE_MAGIC || in.readInt() != STATE_VERSION ||
+                        !in.readUTF().equals(url) || in.readLong() != total || in.readInt() != CHUNK_SIZE) {
+                    return false;
+                }
+
+                // one bit per chunk, eight chunks per byte
+                int count = in.readInt();
+                for (int i = 0; i < count; i += 8) {
+                    int bits = in.readUnsignedByte();
+                    for (int bit = 0; bit < 8; bit++) {
+                        if ((bits & (1 << bit)) != 0) chunks.set(i + bit);
+                    }
+                }
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            chunks.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Method that writes the state file. It's written to a temporary file first, so a crash
+     * never leaves a broken state behind.
+     */
+    private synchronized void persistState () {
+
+        File tempFile = new File(stateFile.getPath() + TEMP_SUFFIX);
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                out.writeInt(STATE_MAGIC);
+                out.writeInt(STATE_VERSION);
+                out.writeUTF(url);
+                out.writeLong(length);
+                out.writeInt(CHUNK_SIZE);
+                int count = chunks.length();
+                out.writeInt(count);
+                for (int i = 0; i < count; i += 8) {
+                    int bits = 0;
+                    for (int bit = 0; bit < 8; bit++) {
+                        if (chunks.get(i + bit)) bits |= 1 << bit;
+                    }
+                    out.writeByte(bits);
+                }
+            } finally {
+                out.close();
+            }
+
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.renameTo(stateFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method that returns the number of chunks in the media
+     *
+     * @return the number of chunks, or 0 if the length is not known
+     */
+    private int chunkCount () {
+        return length > 0 ? (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE) : 0;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that opens a connection for a range of the media
+     *
+     * @param start         the first byte of the range
+     * @param end           the last byte of the range
+     * @return              the connection
+     * @throws IOException  if the connection can't be opened
+     */
+    private HttpURLConnection openConnection (long start, long end) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setInstanceFollowRedirects(true);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+
+        return connection;
+    }
+
+    /**
+     * Method that reads the total length of a media from a partial response
+     *
+     * @param connection    the connection
+     * @return              the total length, or -1 if not known
+     */
+    private static long totalLength (HttpURLConnection connection) {
+        Matcher range = CONTENT_RANGE_PATTERN.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+        if (range.find() && !range.group(3).equals("*")) {
+            return Long.parseLong(range.group(3));
+        }
+        return -1;
+    }
+
+    /**
+     * Method that reads the content length of a response, as a long
+     *
+     * @param connection    the connection
+     * @return              the content length, or -1 if not known
+     */
+    private static long contentLength (HttpURLConnection connection) {
+        try {
+            return Long.parseLong(connection.getHeaderField("Content-Length"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Setters & Getters
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Setter for the number of parallel connections, to be called before "start"
+     *
+     * @param connections number of connections, at least 1
+     */
+    public void setConnections (int connections) {
+        this.connections = Math.max(1, connections);
+    }
+
+    /**
+     * Setter for a bandwidth estimator that gets fed with every transfer of the download
+     *
+     * @param estimator the estimator, or null for none
+     */
+    public void setBandwidthEstimator (SimplexBandwidthEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    /**
+     * Getter for the remote media url
+     *
+     * @return the url
+     */
+    public String getUrl () {
+        return url;
+    }
+
+    /**
+     * Getter for the file the media gets downloaded to
+     *
+     * @return the file
+     */
+    public File getTarget () {
+        return target;
+    }
+
+    /**
+     * Method that sets a new value for the listener
+     *
+     * @param listener a new listener instance
+     */
+    public void setListener (Listener listener) {
+        this.listener = listener != null ? listener : this.listener;
+    }
+
+    /**
+     * Listener that gets told how the download went, on the download thread
+     */
+    public interface Listener {
+
+        /**
+         * Called once the whole media is in its file
+         *
+         * @param file the file
+         */
+        void didDownload (File file);
+
+        /**
+         * Called when the download fails; what's been downloaded so far is kept
+         */
+        void didFail ();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.util.Map;
+
+/**
+ * Aux class that contains methods to find out the type of network the device is on, and to
+ * save & restore the bandwidth history of a SimplexBandwidthEstimator between sessions.
+ */
+public class SimplexNetworkAux {
+
+    // name of the shared preferences the bandwidth history is saved in
+    private static final String PREFERENCES       = "SimplexBandwidthHistory";
+
+    // minimum time between two saves of the estimate of the same network type, in ms
+    private static final long   SAVE_INTERVAL     = 5000;
+
+    /**
+     * Method that returns the type of the network the device is currently on, e.g. "wifi" or
+     * "mobile_LTE"; mobile networks are told apart by their sub-type, since their bandwidth
+     * is so different
+     *
+     * @param context   the current context
+     * @return          the network type
+     */
+    public static String getNetworkType (Context context) {
+
+        NetworkInfo info = null;
+
+        try {
+            ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            info = manager != null ? manager.getActiveNetworkInfo() : null;
+        } catch (SecurityException e) {
+            // no ACCESS_NETWORK_STATE permission
+        }
+
+        if (info == null || !info.isConnected()) {
+            return SimplexBandwidthEstimator.UNKNOWN_NETWORK;
+        }
+
+        switch (info.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                return "wifi";
+            case ConnectivityManager.TYPE_ETHERNET:
+                return "ethernet";
+            case ConnectivityManager.TYPE_MOBILE:
+                return "mobile_" + info.getSubtypeName();
+            default:
+                return "other_" + info.getType();
+        }
+    }
+
+    /**
+     * Method that restores the bandwidth history saved in previous sessions into an estimator,
+     * and makes the estimator save its new estimates from now on. Reading the history waits
+     * for the preferences file to load, so it happens on a background thread; until it's done,
+     * the estimator just has no history, and estimates it makes meanwhile aren't overwritten.
+     *
+     * @param context   the current context
+     * @param estimator the bandwidth estimator
+     */
+    public static void persistHistory (Context context, final SimplexBandwidthEstimator estimator) {
+
+        final SharedPreferences preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+
+        // restore the last estimate of every network type
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+                    if (entry.getValue() instanceof Long) {
+                        estimator.restoreEstimate(entry.getKey(), (Long) entry.getValue());
+                    }
+                }
+            }
+        }, "SimplexBandwidthHistory");
+        thread.setDaemon(true);
+        thread.start();
+
+        // and save new ones, every now and then
+        estimator.setListener(new SimplexBandwidthEstimator.Listener() {
+
+            private String lastType = null;
+            private long   lastSave = 0;
+
+            @Override
+            public synchronized void didUpdateEstimate(String networkType, long bitrate) {
+
+                long now = System.currentTimeMillis();
+                if (networkType.equals(lastType) && now - lastSave < SAVE_INTERVAL) return;
+
+                lastType = networkType;
+                lastSave = now;
+                preferences.edit().putLong(networkType, bitrate).apply();
+            }
+        });
+    }
+}
@@ -7,76 +7,92 @@ package com.gabrielcoman.simplexmediaplayer.aux.style;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 
-import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexBitmap;
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexBitmapCache;
 
 /**
- * Class that holds player style parameters like buffer indicator color, alpha, bitmaps, etc
+ * Class that holds player style parameters like buffer indicator color, alpha, bitmaps, etc.
+ * Styles are immutable: they're created with a Builder, which can also start from an existing
+ * style to change just some of its parameters. Two styles with the same parameters are equal
+ * (custom bitmaps count as the same if they're the same instance), so applying a style that's
+ * equal to the current one costs nothing.
  */
 public class SimplexStyle {
 
-    // bitmaps
-    private Bitmap playBitmap       = SimplexBitmap.createPlayButtonBitmap();
-    private Bitmap replayBitmap     = SimplexBitmap.createReplayButtonBitmap();
-    private Bitmap bottomMaskBitmap = SimplexBitmap.createVideoGradientBitmap();
+    // the built-in styles, shared by everyone since they can't change
+    private static final SimplexStyle RED   = new Builder().setPlaybackColor(Color.RED).build();
+    private static final SimplexStyle BLUE  = new Builder().setPlaybackColor(0xFF669EF9).build();
+    private static final SimplexStyle GREEN = new Builder().setPlaybackColor(0xFF6FCE85).build();
+    private static final SimplexStyle GRAY  = new Builder().setPlaybackColor(0xFFC6C6C6).build();
+
+    // custom bitmaps, or null to use the built-in glyphs
+    private final Bitmap playBitmap;
+    private final Bitmap replayBitmap;
 
     // different colors that can be changed
-    private int     textColor       = Color.WHITE;
-    private int     maskColor       = Color.BLACK;
-    private int     lengthColor     = Color.LTGRAY;
-    private int     bufferColor     = Color.WHITE;
-    private int     playbackColor   = Color.RED;
+    private final int    textColor;
+    private final int    maskColor;
+    private final int    lengthColor;
+    private final int    bufferColor;
+    private final int    playbackColor;
 
     /**
-     * Factory method that creates the default (normal) style for the player
+     * Private constructor that copies the parameters of a builder
      *
-     * @return a new instance of simplex style
+     * @param builder the builder
+     */
+    private SimplexStyle (Builder builder) {
+        playBitmap = builder.playBitmap;
+        replayBitmap = builder.replayBitmap;
+        textColor = builder.textColor;
+        maskColor = builder.maskColor;
+        lengthColor = builder.lengthColor;
+        bufferColor = builder.bufferColor;
+        playbackColor = builder.playbackColor;
+    }
+
+    /**
+     * Factory method that returns the default (normal) style for the player
+     *
+     * @return the simplex style
      */
     public static SimplexStyle defaultStyle () {
         return redStyle();
     }
 
     /**
-     * Factory method that creates the red style for the player
+     * Factory method that returns the red style for the player
      *
-     * @return a new instance of simplex style
+     * @return the simplex style
      */
     public static SimplexStyle redStyle () {
-        SimplexStyle style = new SimplexStyle();
-        style.playbackColor = Color.RED;
-        return style;
+        return RED;
     }
 
     /**
-     * Factory method that creates the blue style for the player
+     * Factory method that returns the blue style for the player
      *
-     * @return a new instance of simplex style
+     * @return the simplex style
      */
     public static SimplexStyle blueStyle () {
-        SimplexStyle style = new SimplexStyle();
-        style.playbackColor = 0xFF669EF9;
-        return style;
+        return BLUE;
     }
 
     /**
-     * Factory method that creates the green style for the player
+     * Factory method that returns the green style for the player
      *
-     * @return a new instance of simplex style
+     * @return the simplex style
      */
     public static SimplexStyle greenStyle () {
-        SimplexStyle style = new SimplexStyle();
-        style.playbackColor = 0xFF6FCE85;
-        return style;
+        return GREEN;
     }
 
     /**
-     * Factory method that creates the gray style for the player
+     * Factory method that returns the gray style for the player
      *
-     * @return a new instance of simplex style
+     * @return the simplex style
      */
     public static SimplexStyle grayStyle () {
-        SimplexStyle style = new SimplexStyle();
-        style.playbackColor = 0xFFC6C6C6;
-        return style;
+        return GRAY;
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -100,15 +116,23 @@ public class SimplexStyle {
     }
 
     public Bitmap getPlayBitmap() {
-        return playBitmap;
+        return playBitmap != null ? playBitmap : SimplexBitmapCache.getPlayButtonBitmap();
     }
 
     public Bitmap getReplayBitmap() {
-        return replayBitmap;
+        return replayBitmap != null ? replayBitmap : SimplexBitmapCache.getReplayButtonBitmap();
     }
 
     public Bitmap getBottomMaskBitmap() {
-        return bottomMaskBitmap;
+        return SimplexBitmapCache.getVideoGradientBitmap();
+    }
+
+    public boolean hasCustomPlayBitmap() {
+        return playBitmap != null;
+    }
+
+    public boolean hasCustomReplayBitmap() {
+        return replayBitmap != null;
     }
 
     public int getTextColor() {
@@ -116,37 +140,142 @@ public class SimplexStyle {
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
-    // Public setters
+    // Equality
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public void setMaskColor (int color) {
-        maskColor = color;
-    }
+    /**
+     * Overridden Object method that compares two styles parameter by parameter. Custom bitmaps
+     * are compared by instance, since comparing their pixels would be anything but cheap.
+     *
+     * @param object the object to compare with
+     * @return       true if it's a style with the same parameters, false otherwise
+     */
+    @Override
+    public boolean equals (Object object) {
 
-    public void setLengthColor (int color) {
-        lengthColor =  color;
-    }
+        if (this == object) return true;
+        if (!(object instanceof SimplexStyle)) return false;
 
-    public void setBufferColor (int color) {
-        bufferColor = color;
+        SimplexStyle style = (SimplexStyle) object;
+        return hasSameBitmaps(style) &&
+                textColor == style.textColor &&
+                maskColor == style.maskColor &&
+                lengthColor == style.lengthColor &&
+                bufferColor == style.bufferColor &&
+                playbackColor == style.playbackColor;
     }
 
-    public void setPlaybackColor (int color) {
-        playbackColor = color;
+    /**
+     * Method that checks whether another style has the same bitmaps, i.e. the same custom
+     * bitmap instances, or both the built-in ones, without decoding the latter
+     *
+     * @param style the other style
+     * @return      true if the bitmaps are the same, false otherwise
+     */
+    public boolean hasSameBitmaps (SimplexStyle style) {
+        return playBitmap == style.playBitmap && replayBitmap == style.replayBitmap;
     }
 
-    public void setTextColor (int textColor) {
-        this.textColor = textColor;
+    /**
+     * Overridden Object method that returns a hash code consistent with "equals"
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode () {
+        int hash = System.identityHashCode(playBitmap);
+        hash = 31 * hash + System.identityHashCode(replayBitmap);
+        hash = 31 * hash + textColor;
+        hash = 31 * hash + maskColor;
+        hash = 31 * hash + lengthColor;
+        hash = 31 * hash + bufferColor;
+        hash = 31 * hash + playbackColor;
+        return hash;
     }
 
-    public void setPlayBitmap (Bitmap bitmap) {
-        playBitmap = bitmap;
-    }
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Builder
+    ////////////////////////////////////////////////////////////////////////////////////////////////
 
-    public void setReplayBitmap (Bitmap bitmap) {
-        replayBitmap = bitmap;
-    }
+    /**
+     * Class that builds a new style, starting either from the default parameters or from those
+     * of an existing style
+     */
+    public static class Builder {
 
+        // the parameters of the style that's going to be built
+        private Bitmap playBitmap       = null;
+        private Bitmap replayBitmap     = null;
+        private int    textColor        = Color.WHITE;
+        private int    maskColor        = Color.BLACK;
+        private int    lengthColor      = Color.LTGRAY;
+        private int    bufferColor      = Color.WHITE;
+        private int    playbackColor    = Color.RED;
 
+        /**
+         * Constructor that starts from the default parameters
+         */
+        public Builder () {
+            // do nothing
+        }
 
+        /**
+         * Constructor that starts from the parameters of an existing style
+         *
+         * @param style the style
+         */
+        public Builder (SimplexStyle style) {
+            playBitmap = style.playBitmap;
+            replayBitmap = style.replayBitmap;
+            textColor = style.textColor;
+            maskColor = style.maskColor;
+            lengthColor = style.lengthColor;
+            bufferColor = style.bufferColor;
+            playbackColor = style.playbackColor;
+        }
+
+        public Builder setMaskColor (int color) {
+            maskColor = color;
+            return this;
+        }
+
+        public Builder setLengthColor (int color) {
+            lengthColor = color;
+            return this;
+        }
+
+        public Builder setBufferColor (int color) {
+            bufferColor = color;
+            return this;
+        }
+
+        public Builder setPlaybackColor (int color) {
+            playbackColor = color;
+            return this;
+        }
+
+        public Builder setTextColor (int color) {
+            textColor = color;
+            return this;
+        }
+
+        public Builder setPlayBitmap (Bitmap bitmap) {
+            playBitmap = bitmap;
+            return this;
+        }
+
+        public Builder setReplayBitmap (Bitmap bitmap) {
+            replayBitmap = bitmap;
+            return this;
+        }
+
+        /**
+         * Method that builds the style
+         *
+         * @return a new instance of simplex style
+         */
+        public SimplexStyle build () {
+            return new SimplexStyle(this);
+        }
+    }
 }
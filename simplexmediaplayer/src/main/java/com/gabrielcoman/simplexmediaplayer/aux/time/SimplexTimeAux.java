@@ -4,15 +4,21 @@
  */
 package com.gabrielcoman.simplexmediaplayer.aux.time;
 
+import java.text.DecimalFormatSymbols;
 import java.util.Locale;
 
 /**
  * Aux class that contains a method that will transform a milisecond time into its
  * "HH:MM:mm" equivalent.
+ * The "formatTime" method does the same into an existing char array, without allocating
+ * anything, so it can be called on every frame.
  *
  */
 public class SimplexTimeAux {
 
+    // maximum number of chars a formatted time takes (up to 99999 hours)
+    public static final int MAX_TIME_CHARS = 11;
+
     /**
      * Method that takes a long parameter representing a time interval and translates it into
      * a new SimplexTime instance
@@ -21,18 +27,7 @@ public class SimplexTimeAux {
      * @return       a new populated SimplexTime instance
      */
     public static SimplexTime getTime (long millis) {
-
-        // create a new string builder
-        StringBuilder buf = new StringBuilder();
-
-        // find out how many hours the millis parameter represents
-        int hours = (int) (millis / (1000 * 60 * 60));
-        // and how many minutes
-        int minutes = (int) ((millis % (1000 * 60 * 60)) / (1000 * 60));
-        // and how many seconds
-        int seconds = (int) (((millis % (1000 * 60 * 60)) % (1000 * 60)) / 1000);
-
-        return new SimplexTime(hours, minutes, seconds);
+        return new SimplexTime(getHours(millis), getMinutes(millis), getSeconds(millis));
     }
 
     /**
@@ -43,29 +38,96 @@ public class SimplexTimeAux {
      * @return       string with format "HH:MM:mm"
      */
     public static String getTimeString(long millis) {
+        char[] chars = new char[MAX_TIME_CHARS];
+        int count = formatTime(millis, getZeroDigit(), chars);
+        return new String(chars, 0, count);
+    }
 
-        // create a new string builder
-        StringBuilder buf = new StringBuilder();
+    /**
+     * Method that takes a long parameter representing a time interval and formats it into
+     * an existing char array, as "MM:mm", or as "HH:MM:mm" if it's an hour or longer
+     *
+     * @param millis    time interval
+     * @param zeroDigit the zero digit of the locale, see "getZeroDigit"
+     * @param chars     char array of at least MAX_TIME_CHARS to format into
+     * @return          number of chars the time takes
+     */
+    public static int formatTime (long millis, char zeroDigit, char[] chars) {
 
-        // find out how many hours the millis parameter represents
-        int hours = (int) (millis / (1000 * 60 * 60));
-        // and how many minutes
-        int minutes = (int) ((millis % (1000 * 60 * 60)) / (1000 * 60));
-        // and how many seconds
-        int seconds = (int) (((millis % (1000 * 60 * 60)) % (1000 * 60)) / 1000);
+        int hours = getHours(millis);
+        int count = 0;
 
-        // format and return
+        // hours take as many digits as they need, but at least two
         if (hours > 0) {
-            return buf
-                    .append(String.format(Locale.getDefault(), "%02d", hours))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", minutes))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", seconds)).toString();
-        } else {
-            return buf.append(String.format(Locale.getDefault(), "%02d", minutes))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", seconds)).toString();
+            int digits = 2;
+            for (int rest = hours / 100; rest > 0 && digits < MAX_TIME_CHARS - 6; rest /= 10) {
+                digits++;
+            }
+            for (int i = digits - 1, rest = hours; i >= 0; i--, rest /= 10) {
+                chars[i] = (char) (zeroDigit + rest % 10);
+            }
+            count = digits;
+            chars[count++] = ':';
         }
+
+        count = formatTwoDigits(getMinutes(millis), zeroDigit, chars, count);
+        chars[count++] = ':';
+        count = formatTwoDigits(getSeconds(millis), zeroDigit, chars, count);
+
+        return count;
+    }
+
+    /**
+     * Method that returns the zero digit of the current locale, that the other digits follow
+     *
+     * @return the zero digit
+     */
+    public static char getZeroDigit () {
+        return new DecimalFormatSymbols(Locale.getDefault()).getZeroDigit();
+    }
+
+    /**
+     * Method that returns how many whole hours a time interval has
+     *
+     * @param millis time interval
+     * @return       the hours
+     */
+    public static int getHours (long millis) {
+        return (int) (millis / (1000 * 60 * 60));
+    }
+
+    /**
+     * Method that returns how many whole minutes a time interval has, past its hours
+     *
+     * @param millis time interval
+     * @return       the minutes
+     */
+    public static int getMinutes (long millis) {
+        return (int) ((millis % (1000 * 60 * 60)) / (1000 * 60));
+    }
+
+    /**
+     * Method that returns how many whole seconds a time interval has, past its minutes
+     *
+     * @param millis time interval
+     * @return       the seconds
+     */
+    public static int getSeconds (long millis) {
+        return (int) (((millis % (1000 * 60 * 60)) % (1000 * 60)) / 1000);
+    }
+
+    /**
+     * Method that formats a value between 0 and 99 as two digits
+     *
+     * @param value     the value
+     * @param zeroDigit the zero digit of the locale
+     * @param chars     char array to format into
+     * @param offset    where in the array to format it
+     * @return          the offset after the two digits
+     */
+    private static int formatTwoDigits (int value, char zeroDigit, char[] chars, int offset) {
+        chars[offset] = (char) (zeroDigit + value / 10);
+        chars[offset + 1] = (char) (zeroDigit + value % 10);
+        return offset + 2;
     }
 }
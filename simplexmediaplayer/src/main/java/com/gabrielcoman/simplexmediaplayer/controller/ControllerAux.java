@@ -0,0 +1,178 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.controller;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.View;
+
+/**
+ * Aux class that contains the sizes & methods both media controllers lay out and draw their
+ * progress bar & time labels with: the SimplexController through its PlaybackIndicator and
+ * TimeIndicator subviews, and the SimplexFlatController by itself. Keeping them in one place
+ * makes sure the two always look the same.
+ * The progress bar is given as the horizontal region it's in: its tracks are inset from it
+ * by the seekbar margin, so the thumb fits at both ends.
+ */
+public class ControllerAux {
+
+    // sizes of the thumb & the tracks
+    public static final int     SEEKBAR_SIZE      = 30;
+    public static final int     SEEKBAR_MARGIN    = (int)(SEEKBAR_SIZE / 2.0F);
+    public static final int     INDICATOR_SIZE    = 10;
+
+    // alpha applied to the colors of the length & buffer tracks, & to the mask behind the
+    // play / replay button
+    public static final float   TRACK_ALPHA       = 0.5F;
+    public static final float   MASK_ALPHA        = 0.25F;
+
+    // horizontal padding on each side of a time label
+    public static final int     TIME_PADDING_HORZ = 15;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Progress bar
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that returns the width of the tracks of a progress bar, i.e. how many pixels
+     * the playback can move by
+     *
+     * @param left  the left edge of the progress bar
+     * @param right the right edge of the progress bar
+     * @return      the width in pixels, or 0 if it's too narrow
+     */
+    public static int getTrackWidth (float left, float right) {
+        return (int) Math.max(0, right - left - 2 * SEEKBAR_MARGIN);
+    }
+
+    /**
+     * Method that returns the x position of a fraction of the tracks of a progress bar
+     *
+     * @param left      the left edge of the progress bar
+     * @param right     the right edge of the progress bar
+     * @param fraction  the fraction
+     * @return          the x position
+     */
+    public static float positionOf (float left, float right, float fraction) {
+        return left + SEEKBAR_MARGIN + fraction * getTrackWidth(left, right);
+    }
+
+    /**
+     * Method that returns the fraction of the tracks of a progress bar at an x position,
+     * e.g. where the user touches it
+     *
+     * @param left  the left edge of the progress bar
+     * @param right the right edge of the progress bar
+     * @param x     the x position
+     * @return      the fraction, clamped to [0, 1]
+     */
+    public static float fractionAt (float left, float right, float x) {
+        return clamp((x - left - SEEKBAR_MARGIN) / getTrackWidth(left, right));
+    }
+
+    /**
+     * Method that draws the tracks & the thumb of a progress bar
+     *
+     * @param canvas        the canvas to draw on
+     * @param left          the left edge of the progress bar
+     * @param right         the right edge of the progress bar
+     * @param centerY       the vertical center of the tracks
+     * @param buffer        the fraction of the video that's been buffered
+     * @param playback      the fraction of the video that's been played
+     * @param thumb         the fraction the thumb is at
+     * @param lengthPaint   the paint of the length track
+     * @param bufferPaint   the paint of the buffer track
+     * @param playbackPaint the paint of the playback track & the thumb
+     */
+    public static void drawTrack (Canvas canvas, float left, float right, float centerY,
+                                  float buffer, float playback, float thumb,
+                                  Paint lengthPaint, Paint bufferPaint, Paint playbackPaint) {
+
+        float top = centerY - INDICATOR_SIZE / 2.0F;
+        float bottom = top + INDICATOR_SIZE;
+        float start = left + SEEKBAR_MARGIN;
+
+        canvas.drawRect(start, top, right - SEEKBAR_MARGIN, bottom, lengthPaint);
+        canvas.drawRect(start, top, positionOf(left, right, buffer), bottom, bufferPaint);
+        canvas.drawRect(start, top, positionOf(left, right, playback), bottom, playbackPaint);
+        canvas.drawCircle(positionOf(left, right, thumb), centerY, SEEKBAR_SIZE / 2.0F, playbackPaint);
+    }
+
+    /**
+     * Method that redraws only the part of a view's progress bar between two fractions, if
+     * they're on different pixels
+     *
+     * @param view      the view
+     * @param left      the left edge of the progress bar
+     * @param right     the right edge of the progress bar
+     * @param top       the top of the part of the view to redraw
+     * @param bottom    the bottom of the part of the view to redraw
+     * @param from      the previous fraction
+     * @param to        the new fraction
+     * @param extra     extra pixels to redraw on each side, e.g. for the thumb
+     */
+    public static void invalidateBetween (View view, float left, float right, int top, int bottom,
+                                          float from, float to, int extra) {
+
+        int fromX = (int) positionOf(left, right, from);
+        int toX = (int) positionOf(left, right, to);
+        if (fromX == toX) return;
+
+        view.invalidate(Math.min(fromX, toX) - extra - 1, top, Math.max(fromX, toX) + extra + 1, bottom);
+    }
+
+    /**
+     * Method that sets the color of a track paint, with the track alpha applied on top of it
+     *
+     * @param paint the paint
+     * @param color the color
+     */
+    public static void setTrackColor (Paint paint, int color) {
+        paint.setColor(color);
+        paint.setAlpha((int) (Color.alpha(color) * TRACK_ALPHA));
+    }
+
+    /**
+     * Method that clamps a percent to the [0, 1] interval
+     *
+     * @param percent   the percent
+     * @return          the clamped percent
+     */
+    public static float clamp (float percent) {
+        return Float.isNaN(percent) ? 0 : Math.max(0, Math.min(1, percent));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Time labels
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that returns the width of the widest time formatted like a given one, i.e. with
+     * the widest digit of the font in place of every digit, so a label that's this wide never
+     * needs to change size until the format does
+     *
+     * @param paint     the paint the time is drawn with
+     * @param zeroDigit the zero digit of the locale
+     * @param chars     the chars of the time
+     * @param count     the number of chars
+     * @return          the width in pixels, rounded up, without padding
+     */
+    public static float getTimeWidth (Paint paint, char zeroDigit, char[] chars, int count) {
+
+        float digitWidth = 0;
+        for (int digit = 0; digit < 10; digit++) {
+            digitWidth = Math.max(digitWidth, paint.measureText(String.valueOf((char) (zeroDigit + digit))));
+        }
+        float colonWidth = paint.measureText(":");
+
+        float width = 0;
+        for (int i = 0; i < count; i++) {
+            width += chars[i] == ':' ? colonWidth : digitWidth;
+        }
+
+        return (float) Math.ceil(width);
+    }
+}
@@ -13,7 +13,7 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 
-import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexGradientDrawable;
 
 /**
  * Subview of Relative Layout that represents a background for the controller playback part
@@ -61,6 +61,7 @@ public class IndicatorBackground extends RelativeLayout {
                 new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         mask.setLayoutParams(bottomGradientParams);
         mask.setScaleType(ImageView.ScaleType.FIT_XY);
+        mask.setImageDrawable(new SimplexGradientDrawable());
         addView(mask);
 
         // a linear layout child of the background, that will be used by time & playback indicators
@@ -74,17 +75,6 @@ public class IndicatorBackground extends RelativeLayout {
         addView(support);
     }
 
-    /**
-     * Method that updates the style of the component
-     *
-     * @param style new style
-     */
-    public void updateStyle (SimplexStyle style) {
-        if (style != null) {
-            mask.setImageBitmap(style.getBottomMaskBitmap());
-        }
-    }
-
     /**
      * Getter for the linear indicator
      *
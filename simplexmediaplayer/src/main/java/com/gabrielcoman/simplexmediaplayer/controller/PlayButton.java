@@ -5,13 +5,16 @@
 package com.gabrielcoman.simplexmediaplayer.controller;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.RelativeLayout;
 
+import com.gabrielcoman.simplexmediaplayer.aux.image.SimplexGlyphDrawable;
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
 
 /**
@@ -28,6 +31,14 @@ public class PlayButton extends RelativeLayout {
     private View         mask;
     private ImageButton  play;
 
+    // the built-in glyphs, shown unless the style has custom bitmaps
+    private Drawable     playGlyph;
+    private Drawable     replayGlyph;
+
+    // the image the button shows (a custom bitmap or a glyph), so it's only set again when
+    // it changes
+    private Object       shownImage  = null;
+
     /**
      * Normal constructor with context
      *
@@ -65,7 +76,7 @@ public class PlayButton extends RelativeLayout {
                 new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         mask.setLayoutParams(fullscreenMaskParams);
         mask.setVisibility(GONE);
-        mask.setAlpha(0.25F);
+        mask.setAlpha(ControllerAux.MASK_ALPHA);
         addView(mask);
 
         // create the play button
@@ -76,6 +87,10 @@ public class PlayButton extends RelativeLayout {
         play.setBackgroundColor(Color.TRANSPARENT);
         play.setImageBitmap(null);
         addView(play);
+
+        // create the built-in glyphs
+        playGlyph = new SimplexGlyphDrawable(SimplexGlyphDrawable.Glyph.PLAY);
+        replayGlyph = new SimplexGlyphDrawable(SimplexGlyphDrawable.Glyph.REPLAY);
     }
 
 
@@ -99,24 +114,55 @@ public class PlayButton extends RelativeLayout {
      * Method that sets the button style to "playing"
      */
     public void setStatePlaying () {
-        play.setImageBitmap(null);
-        mask.setVisibility(GONE);
+        show(null, null, GONE);
     }
 
     /**
      * Method that sets the button style to "paused"
      */
     public void setStatePaused () {
-        play.setImageBitmap(style.getPlayBitmap());
-        mask.setVisibility(VISIBLE);
+        if (style.hasCustomPlayBitmap()) {
+            show(style.getPlayBitmap(), null, VISIBLE);
+        } else {
+            show(null, playGlyph, VISIBLE);
+        }
     }
 
     /**
      * Method that sets the button style to "rewind"
      */
     public void setStateRewind () {
-        play.setImageBitmap(style.getReplayBitmap());
-        mask.setVisibility(VISIBLE);
+        if (style.hasCustomReplayBitmap()) {
+            show(style.getReplayBitmap(), null, VISIBLE);
+        } else {
+            show(null, replayGlyph, VISIBLE);
+        }
+    }
+
+    /**
+     * Method that shows a bitmap or a glyph on the button and sets the visibility of the
+     * mask. Since it's called on every tick, the image is only set when it changes (setting
+     * it lays the button out again).
+     *
+     * @param bitmap            the bitmap, or null to show the glyph
+     * @param glyph             the glyph, or null for none
+     * @param maskVisibility    the visibility of the mask
+     */
+    private void show (Bitmap bitmap, Drawable glyph, int maskVisibility) {
+
+        Object image = bitmap != null ? bitmap : glyph;
+        if (image != shownImage) {
+            if (bitmap != null) {
+                play.setImageBitmap(bitmap);
+            } else {
+                play.setImageDrawable(glyph);
+            }
+            shownImage = image;
+        }
+
+        if (mask.getVisibility() != maskVisibility) {
+            mask.setVisibility(maskVisibility);
+        }
     }
 
     /**
@@ -5,36 +5,33 @@
 package com.gabrielcoman.simplexmediaplayer.controller;
 
 import android.content.Context;
-import android.graphics.Color;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.shapes.OvalShape;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.RelativeLayout;
-import android.widget.SeekBar;
+import android.view.ViewParent;
 
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
 
 /**
- * This class holds all the indicators needed to display the playback, buffer, length and
- * seekbar for the video player
+ * This class draws all the indicators needed to display the playback, buffer, length and
+ * seekbar for the video player: three tracks on top of each other and a round thumb at the
+ * end of the playback track, that the user can drag to seek.
+ * It's a single view that draws itself from the playback & buffer fractions, so updating
+ * them only redraws the part of it that changed, and never needs a layout pass.
  */
-public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekBarChangeListener {
+public class PlaybackIndicator extends View {
 
-    // constants
-    private static final int SEEKBAR_SIZE   = 30;
-    private static final int SEEKBAR_MARGIN = (int)(SEEKBAR_SIZE / 2.0F);
-    private static final int INDICATOR_SIZE = 10;
+    // paints for the tracks & the thumb
+    private Paint            lengthPaint    = new Paint();
+    private Paint            bufferPaint    = new Paint();
+    private Paint            playbackPaint  = new Paint(Paint.ANTI_ALIAS_FLAG);
 
-    // subviews
-    private View             length;
-    private View             buffer;
-    private View             playback;
-    private SeekBar          seekbar;
-    private ShapeDrawable    thumb;
+    // the fractions of the video that have been buffered & played, and where the thumb is
+    private float            buffer         = 0;
+    private float            playback       = 0;
+    private float            thumb          = 0;
 
     // private state var
     private boolean          userControlled = false;
@@ -75,58 +72,10 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
 
         // instantiate local listener interface so it's never null
         listener = new Listener() {
+            @Override public void didScrub(float percent) {}
             @Override public void didStopTracking(float percent) {}};
 
-        // this indicator matches the holder in width and represents the whole video length
-        length = new View(context);
-        RelativeLayout.LayoutParams indicatorLengthParams =
-                new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, INDICATOR_SIZE);
-        indicatorLengthParams.addRule(CENTER_VERTICAL, RelativeLayout.TRUE);
-        indicatorLengthParams.setMargins(SEEKBAR_MARGIN, 0, SEEKBAR_MARGIN, 0);
-        length.setLayoutParams(indicatorLengthParams);
-        length.setAlpha(0.5F);
-        addView(length);
-
-        // this indicator represents how much of the video has been buffered so far
-        buffer = new View(context);
-        RelativeLayout.LayoutParams indicatorBufferParams
-                = new RelativeLayout.LayoutParams(0, INDICATOR_SIZE);
-        indicatorBufferParams.addRule(CENTER_VERTICAL, RelativeLayout.TRUE);
-        indicatorBufferParams.setMargins(SEEKBAR_MARGIN, 0, SEEKBAR_MARGIN, 0);
-        buffer.setLayoutParams(indicatorBufferParams);
-        buffer.setAlpha(0.5F);
-        addView(buffer);
-
-        // this indicator represents the current state of the playback
-        // it is linked to the seek bar (and acts as a seek-bar bar of sorts)
-        playback = new View(context);
-        RelativeLayout.LayoutParams indicatorPlaybackParams
-                = new RelativeLayout.LayoutParams(0, INDICATOR_SIZE);
-        indicatorPlaybackParams.addRule(CENTER_VERTICAL, RelativeLayout.TRUE);
-        indicatorPlaybackParams.setMargins(SEEKBAR_MARGIN, 0, SEEKBAR_MARGIN, 0);
-        playback.setLayoutParams(indicatorPlaybackParams);
-        addView(playback);
-
-        // this indicator is a seek-bar that can control the movie playback
-        // users can drag it to seek to different parts of the video with it
-        seekbar = new SeekBar(context);
-        seekbar.setBackgroundColor(Color.TRANSPARENT);
-        seekbar.setPadding(SEEKBAR_MARGIN, 0, SEEKBAR_MARGIN, 0);
-        RelativeLayout.LayoutParams indicatorSeekBarParams
-                = new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, SEEKBAR_SIZE);
-        indicatorSeekBarParams.addRule(CENTER_VERTICAL, RelativeLayout.TRUE);
-        indicatorSeekBarParams.setMargins(0, 0, 0, 0);
-        seekbar.getProgressDrawable().setColorFilter(new PorterDuffColorFilter(Color.TRANSPARENT, PorterDuff.Mode.SRC_IN));
-        seekbar.setLayoutParams(indicatorSeekBarParams);
-        seekbar.setMinimumHeight(SEEKBAR_SIZE);
-        seekbar.setOnSeekBarChangeListener(this);
-        addView(seekbar);
-
-        // it's thumb, that has the same color
-        thumb = new ShapeDrawable(new OvalShape());
-        thumb.setIntrinsicHeight(SEEKBAR_SIZE);
-        thumb.setIntrinsicWidth(SEEKBAR_SIZE);
-        seekbar.setThumb(thumb);
+        setMinimumHeight(ControllerAux.SEEKBAR_SIZE);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -140,10 +89,10 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
      */
     public void updateStyle (SimplexStyle style) {
         if (style != null) {
-            length.setBackgroundColor(style.getLengthColor());
-            buffer.setBackgroundColor(style.getBufferColor());
-            playback.setBackgroundColor(style.getPlaybackColor());
-            thumb.setColorFilter(style.getPlaybackColor(), PorterDuff.Mode.SRC_IN);
+            ControllerAux.setTrackColor(lengthPaint, style.getLengthColor());
+            ControllerAux.setTrackColor(bufferPaint, style.getBufferColor());
+            playbackPaint.setColor(style.getPlaybackColor());
+            invalidate();
         }
     }
 
@@ -154,7 +103,9 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
      * @param percent current percent of the movie.
      */
     public void updateThumb (float percent) {
-        seekbar.setProgress((int) (100 * percent));
+        float previous = thumb;
+        thumb = ControllerAux.clamp(percent);
+        invalidateBetween(previous, thumb, ControllerAux.SEEKBAR_MARGIN);
     }
 
     /**
@@ -164,11 +115,9 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
      * @param percent current percent of the movie.
      */
     public void updateBuffer (float percent) {
-        int length = this.length.getMeasuredWidth();
-        int width = (int) (percent * length);
-        ViewGroup.LayoutParams params = buffer.getLayoutParams();
-        params.width = width;
-        buffer.setLayoutParams(params);
+        float previous = buffer;
+        buffer = ControllerAux.clamp(percent);
+        invalidateBetween(previous, buffer, 0);
     }
 
     /**
@@ -178,64 +127,131 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
      * @param percent current percent of the movie.
      */
     public void updatePlayback (float percent) {
-        int length = this.length.getMeasuredWidth();
-        int width = (int) (percent * length);
-        ViewGroup.LayoutParams params = playback.getLayoutParams();
-        params.width = width;
-        playback.setLayoutParams(params);
+        float previous = playback;
+        playback = ControllerAux.clamp(percent);
+        invalidateBetween(previous, playback, 0);
+    }
+
+    /**
+     * Public method that returns the width of the tracks, i.e. how many pixels the playback
+     * can move by
+     *
+     * @return the width in pixels, or 0 if it's not been laid out yet
+     */
+    public int getTrackWidth () {
+        return ControllerAux.getTrackWidth(0, getWidth());
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
-    // Implementation of SeekBar.OnSeekBarChangeListener
+    // Drawing
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Seek-bar listener method that informs the controller when the seek-bar is being
-     * moved around by the user
+     * Overridden View method that draws the tracks & the thumb
      *
-     * @param seekBar   current seek bar
-     * @param progress  progress the bar is at
-     * @param fromUser  if the update comes from the user
+     * @param canvas the canvas to draw on
      */
     @Override
-    public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-
-        // calc the percent as a float
-        float percent = progress / 100.0F;
+    protected void onDraw(Canvas canvas) {
+        ControllerAux.drawTrack(canvas, 0, getWidth(), getHeight() / 2.0F, buffer, playback, thumb,
+                lengthPaint, bufferPaint, playbackPaint);
+    }
 
-        // update internally
-        updatePlayback(percent);
+    /**
+     * Method that redraws only the part of the view between two fractions, if they're on
+     * different pixels
+     *
+     * @param from      the previous fraction
+     * @param to        the new fraction
+     * @param extra     extra pixels to redraw on each side, e.g. for the thumb
+     */
+    private void invalidateBetween (float from, float to, int extra) {
+        ControllerAux.invalidateBetween(this, 0, getWidth(), 0, getHeight(), from, to, extra);
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Touch
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
-     * Seek-bar listener method that informs the controller of when the seek-bar has begun being
-     * touched. The state boolean "userControlsPlayback" becomes true and the playback
-     * indicator will be controller only by the user, not by the video player.
+     * Overridden View method that lets the user drag the thumb: while dragging, the playback
+     * is controlled only by the user (not by the video player) and the listener's "didScrub"
+     * is called; once the user lets go, "didStopTracking" is called
      *
-     * @param seekBar current seek bar
+     * @param event the touch event
+     * @return      true, since the view handles all touches
      */
     @Override
-    public void onStartTrackingTouch(SeekBar seekBar) {
-        userControlled = true;
+    public boolean onTouchEvent(MotionEvent event) {
+
+        if (!isEnabled() || getTrackWidth() == 0) return false;
+
+        // calc the percent as a float
+        float percent = ControllerAux.fractionAt(0, getWidth(), event.getX());
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                userControlled = true;
+                setPressed(true);
+
+                // the parent shouldn't take the drag over, e.g. to scroll
+                ViewParent parent = getParent();
+                if (parent != null) {
+                    parent.requestDisallowInterceptTouchEvent(true);
+                }
+
+                updatePlayback(percent);
+                updateThumb(percent);
+                listener.didScrub(percent);
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                if (!userControlled) break;
+                updatePlayback(percent);
+                updateThumb(percent);
+                listener.didScrub(percent);
+                break;
+            }
+            case MotionEvent.ACTION_UP: {
+                if (!userControlled) break;
+                updatePlayback(percent);
+                updateThumb(percent);
+                stopTracking();
+                performClick();
+                break;
+            }
+            case MotionEvent.ACTION_CANCEL: {
+                if (!userControlled) break;
+                stopTracking();
+                break;
+            }
+        }
+
+        return true;
     }
 
     /**
-     * Seek-bar listener method that informs the controller of when the seek-bar has stopped
-     * being touched. The state boolean "userControlsPlayback" becomes false and the playback
-     * indicator will begin being updated by the video player.
+     * Overridden View method, so accessibility services can "click" the view too
      *
-     * @param seekBar current seek bar
+     * @return whatever the View implementation returns
      */
     @Override
-    public void onStopTrackingTouch(SeekBar seekBar) {
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Method called when the user has stopped touching the view. The state var
+     * "userControlled" becomes false and the playback indicator will begin being updated by
+     * the video player.
+     */
+    private void stopTracking () {
 
         // re-set this state var to false
         userControlled = false;
+        setPressed(false);
 
-        // calc the current progress as a float
-        float percent = seekBar.getProgress() / 100.0F;
-
-        listener.didStopTracking(percent);
+        listener.didStopTracking(thumb);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -267,7 +283,14 @@ public class PlaybackIndicator extends RelativeLayout implements SeekBar.OnSeekB
     public interface Listener {
 
         /**
-         * Only method that matters externally is when the user has stopped tracking
+         * Called while the user drags the seek bar
+         *
+         * @param percent percent the user has dragged to
+         */
+        void didScrub (float percent);
+
+        /**
+         * Called when the user has stopped tracking
          *
          * @param percent percent at which user has stopped tracking
          */
@@ -12,18 +12,28 @@ import android.widget.TextView;
 
 import com.gabrielcoman.simplexmediaplayer.aux.style.SimplexStyle;
 import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTime;
-
-import java.util.Locale;
+import com.gabrielcoman.simplexmediaplayer.aux.time.SimplexTimeAux;
 
 /**
- * This class represents a custom TextView used to display video player time
+ * This class represents a custom TextView used to display video player time.
+ * The time is formatted into a reused char array and only set when the displayed second
+ * changes, and the view is kept at the width of the widest time of the same format, so a
+ * new time never causes a layout pass.
  */
 public class TimeIndicator extends TextView {
 
-    // constants
-    private final static int PADDING_HORZ = 15;
+    // constants (the horizontal padding is shared with the flat controller's labels)
     private final static int PADDING_VERT = 10;
 
+    // the displayed time in whole seconds (or -1 if there's none yet), the chars it's
+    // formatted into & the zero digit of the locale
+    private long             shownSecond = -1;
+    private char[]           chars       = new char[SimplexTimeAux.MAX_TIME_CHARS];
+    private char             zeroDigit;
+
+    // number of chars the width of the view has been fixed for (or -1 if it hasn't been)
+    private int              fixedCount  = -1;
+
     /**
      * Normal constructor with context
      *
@@ -53,10 +63,11 @@ public class TimeIndicator extends TextView {
     public TimeIndicator(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
+        zeroDigit = SimplexTimeAux.getZeroDigit();
         setGravity(Gravity.CENTER);
-        updateText(new SimplexTime(0, 0, 0));
+        updateTime(0);
         setBackgroundColor(Color.TRANSPARENT);
-        setPadding(PADDING_HORZ, PADDING_VERT, PADDING_HORZ, PADDING_VERT);
+        setPadding(ControllerAux.TIME_PADDING_HORZ, PADDING_VERT, ControllerAux.TIME_PADDING_HORZ, PADDING_VERT);
     }
 
     /**
@@ -70,30 +81,49 @@ public class TimeIndicator extends TextView {
         }
     }
 
+    /**
+     * Method that updates the time of a time indicator, if the displayed second has changed
+     *
+     * @param millis current time, in ms
+     */
+    public void updateTime (long millis) {
+
+        long second = millis / 1000;
+        if (second == shownSecond) return;
+        shownSecond = second;
+
+        int count = SimplexTimeAux.formatTime(millis, zeroDigit, chars);
+
+        // the width only changes with the format, e.g. once the time reaches an hour
+        if (count != fixedCount) {
+            fixWidth(count);
+        }
+
+        setText(chars, 0, count);
+    }
+
     /**
      * Method that updates the text of a time indicator
      *
      * @param time current simplex time
      */
     public void updateText (SimplexTime time) {
+        updateTime(((time.getHour() * 60L + time.getMinute()) * 60L + time.getSecond()) * 1000L);
+    }
 
-        // create a new string builder
-        StringBuilder buffer = new StringBuilder();
-
-        // format and return
-        if (time.getHour() > 0) {
-            buffer.append(String.format(Locale.getDefault(), "%02d", time.getHour()))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", time.getMinute()))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", time.getSecond()));
-        } else {
-            buffer.append(String.format(Locale.getDefault(), "%02d", time.getMinute()))
-                    .append(":")
-                    .append(String.format(Locale.getDefault(), "%02d", time.getSecond()));
-        }
+    /**
+     * Method that fixes the width of the view to that of the widest time formatted like the
+     * current one, i.e. with the widest digit of the font in place of every digit
+     *
+     * @param count number of chars of the current time
+     */
+    private void fixWidth (int count) {
+
+        float width = ControllerAux.getTimeWidth(getPaint(), zeroDigit, chars, count);
 
-        // update text
-        setText(buffer.toString());
+        int fixedWidth = (int) width + getPaddingLeft() + getPaddingRight();
+        setMinWidth(fixedWidth);
+        setMaxWidth(fixedWidth);
+        fixedCount = count;
     }
 }
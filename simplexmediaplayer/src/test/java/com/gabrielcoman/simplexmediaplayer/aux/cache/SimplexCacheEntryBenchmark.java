@@ -0,0 +1,308 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Simple JVM benchmark of serving cached media over a loopback socket, the way the proxy
+ * serves it to the player: zero-copy, through "SimplexCacheEntry.transferTo", against the
+ * stream copy through a heap buffer that the proxy used to do. It compares the throughput &
+ * the bytes the serving thread allocates, for whole media & for the many small reads of the
+ * media headers the player does. It prints the results; it only fails if the data sent is
+ * wrong, or if serving zero-copy allocates more than copying.
+ */
+public class SimplexCacheEntryBenchmark {
+
+    // size of the media, & of the small reads of its headers
+    private static final int    MEDIA_SIZE      = 32 * 1024 * 1024;
+    private static final int    HEADER_SIZE     = 256 * 1024;
+    private static final int    HEADER_READ     = 4 * 1024;
+
+    // size of the buffer the stream copy goes through, as the proxy's
+    private static final int    BUFFER_SIZE     = 16 * 1024;
+
+    // number of serves to warm up with & to measure
+    private static final int    WARMUP_SERVES   = 5;
+    private static final int    MEASURED_SERVES = 20;
+
+    // the cache & the entry being served
+    private File                directory;
+    private SimplexMediaCache   cache;
+    private SimplexCacheEntry   entry;
+
+    // the loopback server that plays the player's part, & the pool draining its connections
+    private ServerSocketChannel drainChannel;
+    private ExecutorService     drainPool;
+
+    // the JVM's thread bean, which can count the bytes a thread allocates
+    private com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * Method that caches a media & starts the loopback server
+     */
+    @Before
+    public void setUp () throws IOException {
+
+        directory = Files.createTempDirectory("simplex-cache").toFile();
+        cache = new SimplexMediaCache(directory, SimplexMediaCache.DEFAULT_MAX_SIZE);
+        entry = cache.open("benchmark");
+        entry.setMetadata(MEDIA_SIZE, "video/mp4");
+
+        byte[] block = new byte[SimplexMediaCache.DEFAULT_BLOCK_SIZE];
+        Random random = new Random(0);
+        for (int position = 0; position < MEDIA_SIZE; position += block.length) {
+            random.nextBytes(block);
+            entry.write(block, block.length, position, position);
+        }
+        assertTrue(entry.isComplete());
+
+        drainChannel = ServerSocketChannel.open();
+        drainChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        drainPool = Executors.newSingleThreadExecutor();
+
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Method that stops the loopback server & deletes the cache
+     */
+    @After
+    public void tearDown () throws IOException {
+
+        drainPool.shutdownNow();
+        drainChannel.close();
+        cache.close(entry);
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    @Test
+    public void benchmarkWholeMedia () throws Exception {
+        compare("whole media", 0, MEDIA_SIZE, MEDIA_SIZE);
+    }
+
+    @Test
+    public void benchmarkHeaderReads () throws Exception {
+        compare("header reads", 0, HEADER_SIZE, HEADER_READ);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that serves a range of the media, in requests of a certain size, both ways, and
+     * prints how they compare
+     *
+     * @param name      the name of the benchmark
+     * @param start     the first byte of the range
+     * @param end       the (exclusive) last byte of the range
+     * @param request   the size of every request
+     */
+    private void compare (String name, long start, long end, long request) throws Exception {
+
+        for (int i = 0; i < WARMUP_SERVES; i++) {
+            serve(false, start, end, request);
+            serve(true, start, end, request);
+        }
+
+        long[] stream = new long[2];
+        long[] zeroCopy = new long[2];
+        for (int i = 0; i < MEASURED_SERVES; i++) {
+            add(stream, serve(false, start, end, request));
+            add(zeroCopy, serve(true, start, end, request));
+        }
+
+        double megabytes = (end - start) * (double) MEASURED_SERVES / (1024 * 1024);
+        System.out.println(String.format(
+                "SimplexCacheEntry, %s: stream copy %.0f MB/s, %d bytes allocated per serve; " +
+                        "zero-copy %.0f MB/s, %d bytes allocated per serve",
+                name,
+                megabytes / (stream[0] / 1e9), stream[1] / MEASURED_SERVES,
+                megabytes / (zeroCopy[0] / 1e9), zeroCopy[1] / MEASURED_SERVES));
+
+        assertTrue("zero-copy allocates more than the stream copy", zeroCopy[1] < stream[1]);
+    }
+
+    /**
+     * Method that serves a range of the media to the loopback server, in requests of a
+     * certain size, each on a new connection, as the player makes them
+     *
+     * @param zeroCopy  true to serve through "transferTo", false to copy through the heap
+     * @param start     the first byte of the range
+     * @param end       the (exclusive) last byte of the range
+     * @param request   the size of every request
+     * @return          the time (in ns) & the bytes allocated serving, without connecting
+     */
+    private long[] serve (boolean zeroCopy, long start, long end, long request) throws Exception {
+
+        long[] cost = new long[2];
+
+        for (long position = start; position < end; position += request) {
+
+            long count = Math.min(request, end - position);
+            Future<Long> drained = drainPool.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return drain();
+                }
+            });
+
+            SocketChannel channel = SocketChannel.open(drainChannel.socket().getLocalSocketAddress());
+            try {
+                long time = System.nanoTime();
+                long allocated = allocatedBytes();
+
+                if (zeroCopy) {
+                    sendZeroCopy(channel, position, count);
+                } else {
+                    sendStreamCopy(channel.socket(), position, count);
+                }
+
+                cost[1] += allocatedBytes() - allocated;
+                cost[0] += System.nanoTime() - time;
+            } finally {
+                channel.close();
+            }
+
+            assertEquals(count, (long) get(drained));
+        }
+
+        return cost;
+    }
+
+    /**
+     * Method that sends a range of the media the way the proxy does now, see "copyFromCache"
+     *
+     * @param channel   the connection
+     * @param start     the first byte of the range
+     * @param count     the number of bytes
+     */
+    private void sendZeroCopy (SocketChannel channel, long start, long count) throws IOException {
+        long position = start;
+        while (position < start + count) {
+            position += entry.transferTo(position, start + count - position, channel);
+        }
+    }
+
+    /**
+     * Method that sends a range of the media the way the proxy used to, through a buffer
+     * allocated for every request
+     *
+     * @param socket    the connection
+     * @param start     the first byte of the range
+     * @param count     the number of bytes
+     */
+    private void sendStreamCopy (Socket socket, long start, long count) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(entry.getDataFile(), "r");
+        try {
+            OutputStream out = socket.getOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            file.seek(start);
+            long remaining = count;
+            while (remaining > 0) {
+                int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) throw new IOException("Cached data is shorter than expected");
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            out.flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Method that accepts a connection on the loopback server and reads everything sent on
+     * it, like the player does
+     *
+     * @return the number of bytes read
+     */
+    private long drain () throws IOException {
+
+        SocketChannel channel = drainChannel.accept();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            long total = 0;
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Method that waits for the result of a drain
+     *
+     * @param drained   the drain
+     * @return          the number of bytes read
+     */
+    private static Long get (Future<Long> drained) throws Exception {
+        try {
+            return drained.get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Method that adds one cost to another
+     *
+     * @param total the total cost, that gets added to
+     * @param cost  the cost to add
+     */
+    private static void add (long[] total, long[] cost) {
+        total[0] += cost[0];
+        total[1] += cost[1];
+    }
+
+    /**
+     * Method that returns how many bytes the current thread has allocated so far
+     *
+     * @return the number of bytes
+     */
+    private long allocatedBytes () {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import com.gabrielcoman.simplexmediaplayer.aux.network.SimplexDownloader;
+import com.gabrielcoman.simplexmediaplayer.aux.network.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end JVM test of the caching proxy: media are played through the proxy from a local
+ * stand-in for a remote server, which counts the requests it gets, so the tests can tell
+ * what was served from the network & what from disk.
+ */
+public class SimplexCacheProxyTest {
+
+    // size of the cache blocks & of the test media (not a whole number of blocks)
+    private static final int    BLOCK_SIZE      = SimplexMediaCache.DEFAULT_BLOCK_SIZE;
+    private static final int    MEDIA_SIZE      = 5 * BLOCK_SIZE + 1234;
+
+    // size of the chunks downloads are split into, as the downloader's, & of the media that
+    // gets downloaded while it's played
+    private static final int    CHUNK_SIZE      = 1024 * 1024;
+    private static final int    DOWNLOAD_SIZE   = 6 * CHUNK_SIZE;
+
+    // the stand-in server, the cache & the proxy under test
+    private StandInServer       server;
+    private File                directory;
+    private SimplexMediaCache   cache;
+    private SimplexCacheProxy   proxy;
+
+    /**
+     * Method that starts the stand-in server & a proxy backed by an empty cache
+     */
+    @Before
+    public void setUp () throws IOException {
+
+        server = new StandInServer();
+        server.addMedia("/a.mp4", MEDIA_SIZE);
+        server.addMedia("/b.mp4", MEDIA_SIZE);
+        server.addMedia("/c.mp4", MEDIA_SIZE);
+        server.addMedia("/d.mp4", DOWNLOAD_SIZE);
+        server.start();
+
+        directory = Files.createTempDirectory("simplex-cache").toFile();
+        cache = new SimplexMediaCache(directory, SimplexMediaCache.DEFAULT_MAX_SIZE);
+        proxy = new SimplexCacheProxy(cache);
+        proxy.start();
+    }
+
+    /**
+     * Method that stops the proxy & the stand-in server, and deletes the cache
+     */
+    @After
+    public void tearDown () {
+        proxy.stop();
+        server.stop();
+        delete(directory);
+    }
+
+    @Test
+    public void testFirstPlayFromNetworkReplayFromDisk () throws IOException {
+
+        String url = server.getUrl("/a.mp4");
+
+        // the first play comes from the network
+        Response first = get(url, null);
+        assertEquals(200, first.code);
+        assertArrayEquals(server.getMedia("/a.mp4"), first.body);
+        assertTrue(server.getRequestCount() > 0);
+        assertNotNull(cache.getFile(SimplexMediaCache.keyFor(url)));
+
+        // while the replay is served entirely from disk
+        server.resetCounts();
+        Response replay = get(url, null);
+        assertEquals(200, replay.code);
+        assertArrayEquals(server.getMedia("/a.mp4"), replay.body);
+        assertEquals("network requests on replay", 0, server.getRequestCount());
+    }
+
+    @Test
+    public void testRangeRequests () throws IOException {
+
+        String url = server.getUrl("/a.mp4");
+        byte[] media = server.getMedia("/a.mp4");
+
+        // a range in the middle of the media only downloads the blocks it's in
+        Response middle = get(url, "bytes=100000-199999");
+        assertEquals(206, middle.code);
+        assertEquals("bytes 100000-199999/" + MEDIA_SIZE, middle.headers.get("content-range"));
+        assertArrayEquals(Arrays.copyOfRange(media, 100000, 200000), middle.body);
+        assertEquals(Collections.singletonList((long) BLOCK_SIZE), server.getRangeStarts());
+
+        // the same range again is served from disk
+        server.resetCounts();
+        Response again = get(url, "bytes=100000-199999");
+        assertEquals(206, again.code);
+        assertArrayEquals(Arrays.copyOfRange(media, 100000, 200000), again.body);
+        assertEquals(0, server.getRequestCount());
+
+        // an overlapping open range only downloads what's not cached yet
+        Response rest = get(url, "bytes=150000-");
+        assertEquals(206, rest.code);
+        assertEquals("bytes 150000-" + (MEDIA_SIZE - 1) + "/" + MEDIA_SIZE, rest.headers.get("content-range"));
+        assertArrayEquals(Arrays.copyOfRange(media, 150000, MEDIA_SIZE), rest.body);
+        assertEquals(Collections.singletonList(4L * BLOCK_SIZE), server.getRangeStarts());
+
+        // and a range past the end can't be satisfied
+        Response past = get(url, "bytes=" + MEDIA_SIZE + "-");
+        assertEquals(416, past.code);
+        assertEquals("bytes */" + MEDIA_SIZE, past.headers.get("content-range"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction () throws IOException {
+
+        // room for two of the test media, but not three
+        cache.setMaxSize(MEDIA_SIZE * 5 / 2);
+
+        String a = server.getUrl("/a.mp4");
+        String b = server.getUrl("/b.mp4");
+        String c = server.getUrl("/c.mp4");
+
+        get(a, null);
+        get(b, null);
+
+        // replaying "a" makes "b" the least recently used one
+        server.resetCounts();
+        get(a, null);
+        assertEquals(0, server.getRequestCount());
+
+        // so playing "c" evicts "b"
+        Response response = get(c, null);
+        assertArrayEquals(server.getMedia("/c.mp4"), response.body);
+
+        assertNotNull(cache.getFile(SimplexMediaCache.keyFor(a)));
+        assertNull(cache.getFile(SimplexMediaCache.keyFor(b)));
+        assertNotNull(cache.getFile(SimplexMediaCache.keyFor(c)));
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+
+        // and "b" has to come from the network again
+        server.resetCounts();
+        response = get(b, null);
+        assertArrayEquals(server.getMedia("/b.mp4"), response.body);
+        assertTrue(server.getRequestCount() > 0);
+    }
+
+    @Test
+    public void testPlayWhileDownloading () throws Exception {
+
+        // slow enough for the player to catch up with the download
+        server.setBytesPerSecond(2 * CHUNK_SIZE);
+
+        String url = server.getUrl("/d.mp4");
+        byte[] media = server.getMedia("/d.mp4");
+
+        File downloads = Files.createTempDirectory("simplex-download").toFile();
+        try {
+            File target = new File(downloads, "d.mp4");
+            final CountDownLatch latch = new CountDownLatch(1);
+
+            SimplexDownloader downloader = new SimplexDownloader(url, target);
+            downloader.setListener(new SimplexDownloader.Listener() {
+                @Override
+                public void didDownload(File file) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void didFail() {
+                }
+            });
+            proxy.addDownload(downloader);
+            downloader.start();
+
+            // a seek past what the workers have started on gets its chunk fetched first
+            long seek = 5L * CHUNK_SIZE + 1000;
+            Response ahead = get(url, "bytes=" + seek + "-" + (seek + 99999));
+            assertEquals(206, ahead.code);
+            assertEquals("bytes " + seek + "-" + (seek + 99999) + "/" + DOWNLOAD_SIZE, ahead.headers.get("content-range"));
+            assertArrayEquals(Arrays.copyOfRange(media, (int) seek, (int) seek + 100000), ahead.body);
+
+            // and the whole media is served as it comes in
+            Response whole = get(url, null);
+            assertEquals(200, whole.code);
+            assertArrayEquals(media, whole.body);
+
+            assertTrue("download timed out", latch.await(30, TimeUnit.SECONDS));
+            assertTrue(target.exists());
+            assertArrayEquals(media, Files.readAllBytes(target.toPath()));
+
+            // every byte came from the network once: the probe's, then every chunk, with the
+            // one seeked to before the one the workers would have got to next
+            assertEquals(DOWNLOAD_SIZE + 1, server.getBytesSent());
+            List<String> ranges = server.getRanges();
+            assertEquals("0-0", ranges.remove(0));
+            assertEquals(DOWNLOAD_SIZE / CHUNK_SIZE, ranges.size());
+            assertEquals(DOWNLOAD_SIZE / CHUNK_SIZE, new HashSet<>(ranges).size());
+            assertTrue(ranges.indexOf(5 * CHUNK_SIZE + "-" + (DOWNLOAD_SIZE - 1)) <
+                    ranges.indexOf(4 * CHUNK_SIZE + "-" + (5 * CHUNK_SIZE - 1)));
+        } finally {
+            proxy.removeDownload(url);
+            delete(downloads);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that gets (a range of) a media through the proxy, the way the player does, and
+     * reads the response until the proxy closes the connection, i.e. until it's done with it
+     *
+     * @param url           the remote media url
+     * @param range         the "Range" header value, or null
+     * @return              the response
+     * @throws IOException  if the proxy can't be reached
+     */
+    private Response get (String url, String range) throws IOException {
+
+        Matcher matcher = Pattern.compile("http://([^:]+):(\\d+)(/.*)").matcher(proxy.getProxyUrl(url));
+        assertTrue(matcher.matches());
+
+        Socket socket = new Socket(matcher.group(1), Integer.parseInt(matcher.group(2)));
+        try {
+            StringBuilder request = new StringBuilder();
+            request.append("GET ").append(matcher.group(3)).append(" HTTP/1.1\r\n");
+            request.append("Host: ").append(matcher.group(1)).append("\r\n");
+            if (range != null) {
+                request.append("Range: ").append(range).append("\r\n");
+            }
+            request.append("\r\n");
+
+            socket.getOutputStream().write(request.toString().getBytes("ISO-8859-1"));
+            socket.getOutputStream().flush();
+
+            return Response.parse(readAll(socket.getInputStream()));
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Method that reads a stream until its end
+     *
+     * @param in            the stream
+     * @return              everything that was read
+     * @throws IOException  if the stream fails
+     */
+    private static byte[] readAll (InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Method that deletes a file, or a directory with everything in it
+     *
+     * @param file the file or directory
+     */
+    private static void delete (File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Class that holds a parsed HTTP response
+     */
+    private static class Response {
+
+        // the status code, headers (by lowercase name) & body
+        private int                 code;
+        private Map<String, String> headers = new HashMap<>();
+        private byte[]              body;
+
+        /**
+         * Method that parses a whole response
+         *
+         * @param bytes         the response bytes
+         * @return              the response
+         * @throws IOException  if it's not a valid response
+         */
+        static Response parse (byte[] bytes) throws IOException {
+
+            String text = new String(bytes, "ISO-8859-1");
+            int headersEnd = text.indexOf("\r\n\r\n");
+            if (headersEnd < 0) throw new IOException("Incomplete response");
+
+            String[] lines = text.substring(0, headersEnd).split("\r\n");
+
+            Response response = new Response();
+            response.code = Integer.parseInt(lines[0].split(" ")[1]);
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                response.headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+            }
+            response.body = Arrays.copyOfRange(bytes, headersEnd + 4, bytes.length);
+
+            return response;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.cache;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM test for holding downloads back once they're a window ahead of the playhead, with a
+ * 100 s media of 1000 bytes per ms, so bytes & ms of media convert easily
+ */
+public class SimplexPrefetchSchedulerTest {
+
+    // the media: its key, duration & length
+    private static final String KEY             = "media";
+    private static final long   DURATION        = 100000;
+    private static final long   LENGTH          = DURATION * 1000;
+
+    // size of the end of a media that's never held back, as the scheduler's
+    private static final long   HEADER_TAIL     = 256 * 1024;
+
+    // how long a thread gets to be woken up, in ms
+    private static final long   TIMEOUT         = 5000;
+
+    private SimplexPrefetchScheduler scheduler  = new SimplexPrefetchScheduler();
+
+    @Test
+    public void testHeldBackAtWindow () {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+
+        assertTrue(mayFetch(0));
+        assertTrue(mayFetch(SimplexPrefetchScheduler.DEFAULT_WINDOW - 1));
+        assertFalse(mayFetch(SimplexPrefetchScheduler.DEFAULT_WINDOW));
+
+        // once held back, so is everything before the window too
+        assertFalse(mayFetch(SimplexPrefetchScheduler.DEFAULT_WINDOW - 1));
+    }
+
+    @Test
+    public void testHeldBetweenLowWaterAndWindow () {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        assertFalse(mayFetch(30000));
+
+        // the playhead moves on, but the byte is still further ahead than the low-water mark
+        scheduler.updatePlayhead(KEY, 5000, DURATION);
+        assertFalse(mayFetch(30000));
+        scheduler.updatePlayhead(KEY, 19999, DURATION);
+        assertFalse(mayFetch(30000));
+    }
+
+    @Test
+    public void testReleasedAtLowWater () {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        assertFalse(mayFetch(30000));
+
+        scheduler.updatePlayhead(KEY, 20000, DURATION);
+        assertTrue(mayFetch(30000));
+
+        // and downloading goes on up to a whole window ahead again
+        assertTrue(mayFetch(49999));
+        assertFalse(mayFetch(50000));
+    }
+
+    @Test
+    public void testSeekBackClearsWindowFull () {
+
+        scheduler.updatePlayhead(KEY, 50000, DURATION);
+        assertFalse(mayFetch(80000));
+
+        // the player seeks back & asks for the bytes at its new playhead
+        scheduler.updatePlayhead(KEY, 10000, DURATION);
+        assertTrue(mayFetch(10000));
+
+        // which takes the window from there, not from where it was held back
+        assertTrue(mayFetch(35000));
+        assertFalse(mayFetch(40000));
+    }
+
+    @Test
+    public void testSetWindow () {
+
+        scheduler.setWindow(5000, 2000);
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+
+        assertTrue(mayFetch(4999));
+        assertFalse(mayFetch(5000));
+        scheduler.updatePlayhead(KEY, 3000, DURATION);
+        assertTrue(mayFetch(5000));
+    }
+
+    @Test
+    public void testHeaderTail () {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+
+        // the end of the media, where its headers might be, is never held back
+        assertFalse(scheduler.mayFetch(KEY, LENGTH - HEADER_TAIL - 1, LENGTH));
+        assertTrue(scheduler.mayFetch(KEY, LENGTH - HEADER_TAIL, LENGTH));
+        assertTrue(scheduler.mayFetch(KEY, LENGTH - 1, LENGTH));
+    }
+
+    @Test
+    public void testNoPlayhead () {
+
+        // before the player reports a position, or a duration, nothing is held back
+        assertTrue(mayFetch(90000));
+        scheduler.updatePlayhead(KEY, 0, 0);
+        assertTrue(mayFetch(90000));
+
+        // & nor once it's no longer played
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        assertFalse(mayFetch(90000));
+        scheduler.clearPlayhead(KEY);
+        assertTrue(mayFetch(90000));
+    }
+
+    @Test
+    public void testAwaitFetchWakesOnUpdatePlayhead () throws Exception {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        Waiter waiter = awaitFetch(30000);
+
+        // still held back with the playhead short of the low-water mark
+        scheduler.updatePlayhead(KEY, 10000, DURATION);
+        waiter.thread.join(200);
+        assertTrue(waiter.thread.isAlive());
+
+        scheduler.updatePlayhead(KEY, 20000, DURATION);
+        waiter.thread.join(TIMEOUT);
+        assertFalse(waiter.thread.isAlive());
+        assertNull(waiter.error);
+    }
+
+    @Test
+    public void testAwaitFetchWakesOnClearPlayhead () throws Exception {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        Waiter waiter = awaitFetch(30000);
+
+        scheduler.clearPlayhead(KEY);
+        waiter.thread.join(TIMEOUT);
+        assertFalse(waiter.thread.isAlive());
+        assertNull(waiter.error);
+    }
+
+    @Test
+    public void testAwaitFetchInterrupted () throws Exception {
+
+        scheduler.updatePlayhead(KEY, 0, DURATION);
+        Waiter waiter = awaitFetch(30000);
+
+        waiter.thread.interrupt();
+        waiter.thread.join(TIMEOUT);
+        assertFalse(waiter.thread.isAlive());
+        assertTrue(waiter.error instanceof InterruptedIOException);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that checks whether the byte at a time of the media may be downloaded
+     *
+     * @param time  the time, in ms of media
+     * @return      true or false
+     */
+    private boolean mayFetch (long time) {
+        return scheduler.mayFetch(KEY, time * 1000, LENGTH);
+    }
+
+    /**
+     * Method that starts a thread waiting to download the byte at a time of the media, and
+     * returns once it's waiting
+     *
+     * @param time  the time, in ms of media
+     * @return      the waiting thread
+     */
+    private Waiter awaitFetch (final long time) throws InterruptedException {
+
+        final Waiter waiter = new Waiter();
+        waiter.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.awaitFetch(KEY, time * 1000, LENGTH);
+                } catch (InterruptedIOException e) {
+                    waiter.error = e;
+                }
+            }
+        });
+        waiter.thread.setDaemon(true);
+        waiter.thread.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (waiter.thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, waiter.thread.getState());
+
+        return waiter;
+    }
+
+    /**
+     * Class that holds a thread waiting to download, & how it stopped waiting
+     */
+    private static class Waiter {
+        private Thread              thread;
+        private volatile Exception  error;
+    }
+}
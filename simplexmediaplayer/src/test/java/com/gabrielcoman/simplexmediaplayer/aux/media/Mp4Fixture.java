@@ -0,0 +1,176 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Aux class that builds small MP4 files for the parser tests, box by box. Only the boxes
+ * & fields the parser reads are filled in; everything else is left out or zeroed.
+ */
+class Mp4Fixture {
+
+    /**
+     * Method that builds a box
+     *
+     * @param type      the box type
+     * @param children  the contents of the box, e.g. other boxes
+     * @return          the box bytes
+     */
+    static byte[] box (String type, byte[]... children) throws IOException {
+        byte[] content = concat(children);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(8 + content.length);
+        out.writeBytes(type);
+        out.write(content);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method that builds a box with a 64-bit ("largesize") size
+     *
+     * @param type      the box type
+     * @param children  the contents of the box, e.g. other boxes
+     * @return          the box bytes
+     */
+    static byte[] largeBox (String type, byte[]... children) throws IOException {
+        byte[] content = concat(children);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeBytes(type);
+        out.writeLong(16 + content.length);
+        out.write(content);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method that builds a track
+     *
+     * @param handler   the handler type, e.g. "vide" or "soun"
+     * @param timescale the time scale of the track
+     * @param stbl      the contents of the sample table box
+     * @return          the "trak" box bytes
+     */
+    static byte[] track (String handler, long timescale, byte[]... stbl) throws IOException {
+        return box("trak",
+                box("tkhd", new byte[84]),
+                box("mdia",
+                        mdhd(timescale),
+                        hdlr(handler),
+                        box("minf",
+                                box("stbl", stbl))));
+    }
+
+    /**
+     * Method that builds a version 0 media header box
+     *
+     * @param timescale the time scale
+     * @return          the "mdhd" box bytes
+     */
+    static byte[] mdhd (long timescale) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);                // version & flags
+        out.writeInt(0);                // creation time
+        out.writeInt(0);                // modification time
+        out.writeInt((int) timescale);
+        out.writeInt(0);                // duration
+        out.writeInt(0);                // language & pre-defined
+        return box("mdhd", bytes.toByteArray());
+    }
+
+    /**
+     * Method that builds a handler box
+     *
+     * @param handler   the handler type
+     * @return          the "hdlr" box bytes
+     */
+    static byte[] hdlr (String handler) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);                // version & flags
+        out.writeInt(0);                // pre-defined
+        out.writeBytes(handler);
+        out.write(new byte[13]);        // reserved & empty name
+        return box("hdlr", bytes.toByteArray());
+    }
+
+    /**
+     * Method that builds a time to sample box
+     *
+     * @param entries   pairs of sample count & sample delta
+     * @return          the "stts" box bytes
+     */
+    static byte[] stts (long... entries) throws IOException {
+        return table("stts", entries.length / 2, entries);
+    }
+
+    /**
+     * Method that builds a sync sample box
+     *
+     * @param samples   the (1-based) sync sample numbers
+     * @return          the "stss" box bytes
+     */
+    static byte[] stss (long... samples) throws IOException {
+        return table("stss", samples.length, samples);
+    }
+
+    /**
+     * Method that builds a table box, with an entry count that may not match its values
+     *
+     * @param type      the box type
+     * @param count     the entry count
+     * @param values    the values of the entries
+     * @return          the box bytes
+     */
+    static byte[] table (String type, long count, long... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);                // version & flags
+        out.writeInt((int) count);
+        for (long value : values) {
+            out.writeInt((int) value);
+        }
+        return box(type, bytes.toByteArray());
+    }
+
+    /**
+     * Method that concatenates byte arrays
+     *
+     * @param parts the arrays
+     * @return      all of them, one after the other
+     */
+    static byte[] concat (byte[]... parts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method that writes boxes to a new temporary file
+     *
+     * @param boxes the top level boxes
+     * @return      the file, which gets deleted when the JVM exits
+     */
+    static File write (byte[]... boxes) throws IOException {
+        File file = File.createTempFile("simplex", ".mp4");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(concat(boxes));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM test for snapping times to key frames
+ */
+public class SimplexKeyframeIndexTest {
+
+    // key frames every 2s, but for a shorter gap in between
+    private SimplexKeyframeIndex index = new SimplexKeyframeIndex(new long[]{0, 2000, 4000, 5000, 7000}, false);
+
+    @Test
+    public void testSnap () {
+
+        // exact key frames
+        assertEquals(0, index.snap(0));
+        assertEquals(4000, index.snap(4000));
+        assertEquals(7000, index.snap(7000));
+
+        // in between, to the nearest one
+        assertEquals(2000, index.snap(1001));
+        assertEquals(2000, index.snap(2999));
+        assertEquals(4000, index.snap(4499));
+        assertEquals(5000, index.snap(4501));
+
+        // exactly halfway, to the earlier one
+        assertEquals(2000, index.snap(3000));
+        assertEquals(4000, index.snap(4500));
+    }
+
+    @Test
+    public void testSnapOutOfBounds () {
+        assertEquals(0, index.snap(-500));
+        assertEquals(7000, index.snap(7001));
+        assertEquals(7000, index.snap(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testFloor () {
+
+        assertEquals(0, index.floor(0));
+        assertEquals(0, index.floor(1999));
+        assertEquals(2000, index.floor(2000));
+        assertEquals(4000, index.floor(4999));
+        assertEquals(5000, index.floor(6999));
+
+        // after the last key frame it's the last one, & before the first one, the first one
+        assertEquals(7000, index.floor(100000));
+        assertEquals(0, index.floor(-500));
+    }
+
+    @Test
+    public void testFirstKeyFrameLate () {
+
+        // e.g. an edit list that cuts the start of the track
+        SimplexKeyframeIndex late = new SimplexKeyframeIndex(new long[]{500, 2500}, false);
+
+        assertEquals(500, late.snap(0));
+        assertEquals(500, late.floor(0));
+        assertEquals(500, late.floor(2499));
+    }
+
+    @Test
+    public void testSingleKeyFrame () {
+
+        SimplexKeyframeIndex single = new SimplexKeyframeIndex(new long[]{0}, false);
+
+        assertEquals(0, single.snap(123456));
+        assertEquals(0, single.floor(123456));
+    }
+
+    @Test
+    public void testNoKeyFrames () {
+
+        SimplexKeyframeIndex empty = new SimplexKeyframeIndex(null, false);
+
+        assertEquals(0, empty.size());
+        assertEquals(1234, empty.snap(1234));
+        assertEquals(1234, empty.floor(1234));
+    }
+
+    @Test
+    public void testAllSync () {
+
+        SimplexKeyframeIndex allSync = new SimplexKeyframeIndex(new long[]{0, 2000}, true);
+
+        assertTrue(allSync.isAllSync());
+        assertEquals(1234, allSync.snap(1234));
+        assertEquals(1234, allSync.floor(1234));
+    }
+}
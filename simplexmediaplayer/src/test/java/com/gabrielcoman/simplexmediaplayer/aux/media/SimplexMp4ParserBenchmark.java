@@ -0,0 +1,110 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.gabrielcoman.simplexmediaplayer.aux.media.Mp4Fixture.*;
+import static org.junit.Assert.*;
+
+/**
+ * Simple JVM benchmark of building & using a key frame index, for a two hour 30 fps video
+ * with a key frame every two seconds. It prints how long parsing & snapping take; it only
+ * fails if the results are wrong, not if they're slow.
+ */
+public class SimplexMp4ParserBenchmark {
+
+    // the video: its length, frame rate & key frame interval
+    private static final int    SAMPLES         = 2 * 60 * 60 * 30;
+    private static final int    TIMESCALE       = 30000;
+    private static final int    KEYFRAME_EVERY  = 60;
+
+    // number of runs to warm up with & to measure
+    private static final int    WARMUP_RUNS     = 20;
+    private static final int    MEASURED_RUNS   = 100;
+    private static final int    SNAPS           = 1000000;
+
+    @Test
+    public void benchmarkParse () throws IOException {
+
+        File file = buildFile();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            SimplexMp4Parser.parseKeyframes(file);
+        }
+
+        long start = System.nanoTime();
+        SimplexKeyframeIndex index = null;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            index = SimplexMp4Parser.parseKeyframes(file);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertNotNull(index);
+        assertEquals(SAMPLES / KEYFRAME_EVERY, index.size());
+
+        System.out.println(String.format("SimplexMp4Parser: %d key frames parsed in %.3f ms",
+                index.size(), elapsed / 1e6 / MEASURED_RUNS));
+    }
+
+    @Test
+    public void benchmarkSnap () throws IOException {
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(buildFile());
+        assertNotNull(index);
+
+        long duration = index.getTime(index.size() - 1);
+        long sink = 0;
+
+        for (int i = 0; i < SNAPS; i++) {
+            sink += index.snap(i % duration);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SNAPS; i++) {
+            sink += index.snap((i * 7919L) % duration);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(sink > 0);
+
+        System.out.println(String.format("SimplexKeyframeIndex: %.1f ns per snap, over %d key frames",
+                elapsed / (double) SNAPS, index.size()));
+    }
+
+    /**
+     * Method that builds the video file: 1 MB of media data followed by the movie box, with
+     * an "stts" entry for every key frame interval (as with variable frame rate video)
+     *
+     * @return the file
+     */
+    private static File buildFile () throws IOException {
+
+        int intervals = SAMPLES / KEYFRAME_EVERY;
+
+        long[] durations = new long[intervals * 2];
+        for (int i = 0; i < intervals; i++) {
+            durations[i * 2] = KEYFRAME_EVERY;
+            durations[i * 2 + 1] = i % 2 == 0 ? 1000 : 1002;
+        }
+
+        long[] keyframes = new long[intervals];
+        for (int i = 0; i < intervals; i++) {
+            keyframes[i] = i * KEYFRAME_EVERY + 1;
+        }
+
+        return write(
+                box("ftyp", "isom".getBytes("US-ASCII")),
+                box("mdat", new byte[1024 * 1024]),
+                box("moov",
+                        box("mvhd", new byte[100]),
+                        track("vide", TIMESCALE,
+                                stts(durations),
+                                stss(keyframes))));
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.media;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.gabrielcoman.simplexmediaplayer.aux.media.Mp4Fixture.*;
+import static org.junit.Assert.*;
+
+/**
+ * JVM test for the MP4 parser, with small MP4 files built box by box
+ */
+public class SimplexMp4ParserTest {
+
+    @Test
+    public void testSyncSampleTable () throws IOException {
+
+        // 30000 / 1001 fps for 90 samples, then half that; a key frame every 30 samples
+        File file = write(
+                box("ftyp", "isom".getBytes("US-ASCII")),
+                box("moov",
+                        box("mvhd", new byte[100]),
+                        track("vide", 30000,
+                                stts(90, 1001, 60, 2002),
+                                stss(1, 31, 61, 91, 121))),
+                box("mdat", new byte[64]));
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(file);
+
+        assertNotNull(index);
+        assertFalse(index.isAllSync());
+        assertEquals(5, index.size());
+        assertEquals(0, index.getTime(0));
+        assertEquals(30 * 1001 * 1000 / 30000, index.getTime(1));
+        assertEquals(60 * 1001 * 1000 / 30000, index.getTime(2));
+        assertEquals(90 * 1001 * 1000 / 30000, index.getTime(3));
+        assertEquals((90 * 1001 + 30 * 2002) * 1000L / 30000, index.getTime(4));
+    }
+
+    @Test
+    public void testNoSyncSampleTable () throws IOException {
+
+        // without "stss", every sample is a key frame
+        File file = write(
+                box("moov",
+                        track("vide", 1000,
+                                stts(100, 40))));
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(file);
+
+        assertNotNull(index);
+        assertTrue(index.isAllSync());
+        assertEquals(0, index.size());
+        assertEquals(1234, index.snap(1234));
+        assertEquals(1234, index.floor(1234));
+    }
+
+    @Test
+    public void testFirstVideoTrack () throws IOException {
+
+        // the audio track comes first, but it's the video one that gets indexed
+        File file = write(
+                box("moov",
+                        track("soun", 44100,
+                                stts(1000, 1024)),
+                        track("vide", 1000,
+                                stts(100, 40),
+                                stss(1, 51))));
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(file);
+
+        assertNotNull(index);
+        assertEquals(2, index.size());
+        assertEquals(0, index.getTime(0));
+        assertEquals(2000, index.getTime(1));
+    }
+
+    @Test
+    public void testNoVideoTrack () throws IOException {
+
+        File file = write(
+                box("moov",
+                        track("soun", 44100,
+                                stts(1000, 1024))));
+
+        assertNull(SimplexMp4Parser.parseKeyframes(file));
+    }
+
+    @Test
+    public void testLargeBoxSizes () throws IOException {
+
+        // both a box before "moov" & "moov" itself have 64-bit sizes
+        File file = write(
+                largeBox("mdat", new byte[64]),
+                largeBox("moov",
+                        track("vide", 1000,
+                                stts(100, 40),
+                                stss(1, 26, 76))));
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(file);
+
+        assertNotNull(index);
+        assertEquals(3, index.size());
+        assertEquals(1000, index.getTime(1));
+        assertEquals(3000, index.getTime(2));
+    }
+
+    @Test
+    public void testLastBoxToEndOfFile () throws IOException {
+
+        // a size of 0 means the box goes on to the end of the file
+        byte[] moov = box("moov",
+                track("vide", 1000,
+                        stts(100, 40),
+                        stss(1, 51)));
+        ByteBuffer.wrap(moov).putInt(0, 0);
+
+        SimplexKeyframeIndex index = SimplexMp4Parser.parseKeyframes(write(box("free"), moov));
+
+        assertNotNull(index);
+        assertEquals(2, index.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSyncSampleCount () throws IOException {
+
+        // the count says there are far more entries than fit in the box
+        File file = write(
+                box("moov",
+                        track("vide", 1000,
+                                stts(100, 40),
+                                table("stss", 0x7FFFFFFF, 1, 51))));
+
+        SimplexMp4Parser.parseKeyframes(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidTimeToSampleCount () throws IOException {
+
+        File file = write(
+                box("moov",
+                        track("vide", 1000,
+                                table("stts", 3, 100, 40),
+                                stss(1, 51))));
+
+        SimplexMp4Parser.parseKeyframes(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBoxLargerThanParent () throws IOException {
+
+        byte[] moov = box("moov",
+                track("vide", 1000,
+                        stts(100, 40),
+                        stss(1, 51)));
+        ByteBuffer.wrap(moov).putInt(0, moov.length + 16);
+
+        SimplexMp4Parser.parseKeyframes(write(moov));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoMovieBox () throws IOException {
+        SimplexMp4Parser.parseKeyframes(write(box("ftyp", "isom".getBytes("US-ASCII")), box("mdat", new byte[64])));
+    }
+}
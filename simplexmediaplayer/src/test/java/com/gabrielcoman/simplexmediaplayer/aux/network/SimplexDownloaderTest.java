@@ -0,0 +1,323 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end JVM test of the parallel downloader, against a local stand-in for a remote
+ * server, which logs the ranges it gets asked for, so the tests can tell what was fetched,
+ * what was fetched again & what was left alone.
+ */
+public class SimplexDownloaderTest {
+
+    // size of the chunks the downloader splits media into, as the downloader's
+    private static final int    CHUNK_SIZE  = 1024 * 1024;
+
+    // how long a download gets before the test gives up on it, in s
+    private static final int    TIMEOUT     = 30;
+
+    // the stand-in server, & the directory & file downloads go to
+    private StandInServer       server;
+    private File                directory;
+    private File                target;
+
+    /**
+     * Method that starts the stand-in server
+     */
+    @Before
+    public void setUp () throws IOException {
+
+        server = new StandInServer();
+        server.addMedia("/a.mp4", 4 * CHUNK_SIZE + CHUNK_SIZE / 2);
+        server.addMedia("/b.mp4", 8 * CHUNK_SIZE);
+        server.start();
+
+        directory = Files.createTempDirectory("simplex-download").toFile();
+        target = new File(directory, "media.mp4");
+    }
+
+    /**
+     * Method that stops the stand-in server & deletes the downloads
+     */
+    @After
+    public void tearDown () {
+        server.stop();
+        delete(directory);
+    }
+
+    @Test
+    public void testParallelChunks () throws Exception {
+
+        // slow enough for the chunks to overlap
+        server.setBytesPerSecond(4 * CHUNK_SIZE);
+
+        assertTrue(download("/a.mp4"));
+
+        assertArrayEquals(server.getMedia("/a.mp4"), Files.readAllBytes(target.toPath()));
+        assertFalse(partFile().exists());
+        assertFalse(stateFile().exists());
+
+        // the probe, then every chunk once, over more than one connection at a time
+        List<String> ranges = server.getRanges();
+        assertEquals("0-0", ranges.remove(0));
+        assertEquals(chunkRanges(server.getMedia("/a.mp4").length, allChunks(5)), sorted(ranges));
+        assertTrue(server.getMaxConnections() > 1);
+    }
+
+    @Test
+    public void testResumeAfterCancel () throws Exception {
+
+        // slow enough to cancel half way through
+        server.setBytesPerSecond(2 * CHUNK_SIZE);
+
+        SimplexDownloader first = new SimplexDownloader(server.getUrl("/b.mp4"), target);
+        first.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT * 1000;
+        while (!stateFile().exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        first.cancel();
+        awaitIdle();
+
+        assertFalse(target.exists());
+        assertTrue(partFile().exists());
+        BitSet done = readState();
+        assertTrue(done.cardinality() > 0);
+        assertTrue(done.cardinality() < 8);
+
+        // a new downloader only asks for the chunks that weren't done
+        server.resetCounts();
+        server.setBytesPerSecond(0);
+        assertTrue(download("/b.mp4"));
+
+        assertArrayEquals(server.getMedia("/b.mp4"), Files.readAllBytes(target.toPath()));
+        assertFalse(partFile().exists());
+        assertFalse(stateFile().exists());
+
+        BitSet missing = allChunks(8);
+        missing.andNot(done);
+        List<String> ranges = server.getRanges();
+        assertEquals("0-0", ranges.remove(0));
+        assertEquals(chunkRanges(8 * CHUNK_SIZE, missing), sorted(ranges));
+    }
+
+    @Test
+    public void testWithoutRanges () throws Exception {
+
+        server.setRanged(false);
+
+        assertTrue(download("/a.mp4"));
+
+        assertArrayEquals(server.getMedia("/a.mp4"), Files.readAllBytes(target.toPath()));
+        assertEquals(1, server.getRequestCount());
+        assertFalse(partFile().exists());
+        assertFalse(stateFile().exists());
+    }
+
+    @Test
+    public void testWithoutRangesOrLength () throws Exception {
+
+        // the media only ends when the connection does
+        server.setRanged(false);
+        server.setLengthSent(false);
+
+        assertTrue(download("/a.mp4"));
+
+        assertArrayEquals(server.getMedia("/a.mp4"), Files.readAllBytes(target.toPath()));
+        assertEquals(1, server.getRequestCount());
+        assertFalse(partFile().exists());
+    }
+
+    @Test
+    public void testErrorResponse () throws Exception {
+
+        // the first chunk comes through, but the rest fail
+        server.failRangesFrom(CHUNK_SIZE, 500);
+
+        assertFalse(download("/a.mp4"));
+
+        assertFalse(target.exists());
+        assertTrue(partFile().exists());
+        assertTrue(readState().get(0));
+        assertEquals(1, readState().cardinality());
+    }
+
+    @Test
+    public void testShortChunk () throws Exception {
+
+        // the second chunk gets cut short, & the ones after it are empty
+        server.cutAt(CHUNK_SIZE + 1000);
+
+        assertFalse(download("/a.mp4"));
+
+        assertFalse(target.exists());
+        assertTrue(partFile().exists());
+        assertTrue(readState().get(0));
+        assertEquals(1, readState().cardinality());
+    }
+
+    @Test
+    public void testShortStream () throws Exception {
+
+        server.setRanged(false);
+        server.cutAt(CHUNK_SIZE + 1000);
+
+        assertFalse(download("/a.mp4"));
+
+        assertFalse(target.exists());
+        assertTrue(partFile().exists());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that downloads a media to the target & waits for it to finish
+     *
+     * @param path  the path the media's served at
+     * @return      true if it was downloaded, false if it failed
+     */
+    private boolean download (String path) throws InterruptedException {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] isDownloaded = new boolean[1];
+
+        SimplexDownloader downloader = new SimplexDownloader(server.getUrl(path), target);
+        downloader.setListener(new SimplexDownloader.Listener() {
+            @Override
+            public void didDownload(File file) {
+                isDownloaded[0] = true;
+                latch.countDown();
+            }
+
+            @Override
+            public void didFail() {
+                latch.countDown();
+            }
+        });
+        downloader.start();
+
+        assertTrue("download timed out", latch.await(TIMEOUT, TimeUnit.SECONDS));
+        return isDownloaded[0];
+    }
+
+    /**
+     * Method that waits for a cancelled download to let go of the stand-in server, and then a
+     * bit longer, for it to record its last chunks & close its files
+     */
+    private void awaitIdle () throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + TIMEOUT * 1000;
+        while (server.getConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.getConnections());
+        Thread.sleep(200);
+    }
+
+    /**
+     * Method that reads which chunks the state file records as done
+     *
+     * @return the chunks
+     */
+    private BitSet readState () throws IOException {
+
+        BitSet chunks = new BitSet();
+
+        DataInputStream in = new DataInputStream(new FileInputStream(stateFile()));
+        try {
+            // magic, version, url, length & chunk size
+            in.readInt();
+            in.readInt();
+            in.readUTF();
+            in.readLong();
+            assertEquals(CHUNK_SIZE, in.readInt());
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 8) {
+                int bits = in.readUnsignedByte();
+                for (int bit = 0; bit < 8; bit++) {
+                    if ((bits & (1 << bit)) != 0) chunks.set(i + bit);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Method that returns the ranges the downloader asks for, for some chunks of a media
+     *
+     * @param length    the length of the media
+     * @param chunks    the chunks
+     * @return          their ranges, as the stand-in server logs them, sorted
+     */
+    private static List<String> chunkRanges (long length, BitSet chunks) {
+
+        List<String> ranges = new ArrayList<>();
+        for (int chunk = chunks.nextSetBit(0); chunk >= 0; chunk = chunks.nextSetBit(chunk + 1)) {
+            long start = (long) chunk * CHUNK_SIZE;
+            ranges.add(start + "-" + (Math.min(start + CHUNK_SIZE, length) - 1));
+        }
+        return sorted(ranges);
+    }
+
+    private static BitSet allChunks (int count) {
+        BitSet chunks = new BitSet();
+        chunks.set(0, count);
+        return chunks;
+    }
+
+    private static List<String> sorted (List<String> ranges) {
+        List<String> copy = new ArrayList<>(ranges);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private File partFile () {
+        return new File(target.getPath() + ".part");
+    }
+
+    private File stateFile () {
+        return new File(target.getPath() + ".state");
+    }
+
+    /**
+     * Method that deletes a file, or a directory & all its contents
+     *
+     * @param file the file or directory
+     */
+    private static void delete (File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
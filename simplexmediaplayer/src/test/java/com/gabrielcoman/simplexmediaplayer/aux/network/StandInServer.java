@@ -0,0 +1,350 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that stands in for a remote media server in the JVM tests: it serves random media
+ * from memory over loopback, with or without support for range requests, can be throttled,
+ * made to fail or to cut responses short, and counts the requests it gets & the bytes it
+ * sends, so tests can tell what was fetched from the network
+ */
+public class StandInServer {
+
+    // pattern of the "Range" header values the server understands
+    private static final Pattern RANGE_PATTERN  = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    // size of the slices responses are sent in, & throttled by
+    private static final int     SLICE_SIZE     = 16 * 1024;
+
+    // the media served, by path
+    private Map<String, byte[]>  media          = new HashMap<>();
+
+    // how the server behaves: how fast each connection goes (0 for as fast as it can),
+    // whether it supports ranges & sends the length of whole media, the response code of
+    // range requests from some position on (0 for none), & where every response gets cut
+    // short (-1 for nowhere)
+    private volatile long        bytesPerSecond = 0;
+    private volatile boolean     isRanged       = true;
+    private volatile boolean     isLengthSent   = true;
+    private volatile long        failFrom       = 0;
+    private volatile int         failCode       = 0;
+    private volatile long        cutAt          = -1;
+
+    // the server socket & the thread accepting connections on it
+    private ServerSocket         serverSocket;
+    private Thread               acceptThread;
+
+    // requests since the counts were reset: their ranges (as "start-end", or "start-" if
+    // open, or "" if not a range request), the bytes sent, & the most connections at once
+    private List<String>         ranges         = new ArrayList<>();
+    private long                 bytesSent      = 0;
+    private int                  connections    = 0;
+    private int                  maxConnections = 0;
+
+    /**
+     * Method that adds a media of random bytes
+     *
+     * @param path the path it's served at
+     * @param size its size in bytes
+     */
+    public void addMedia (String path, int size) {
+        byte[] bytes = new byte[size];
+        new Random(path.hashCode()).nextBytes(bytes);
+        media.put(path, bytes);
+    }
+
+    /**
+     * Method that returns the bytes of a media
+     *
+     * @param path  the path it's served at
+     * @return      the bytes
+     */
+    public byte[] getMedia (String path) {
+        return media.get(path);
+    }
+
+    /**
+     * Method that returns the url of a media
+     *
+     * @param path  the path it's served at
+     * @return      the url
+     */
+    public String getUrl (String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Behaviour
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public void setBytesPerSecond (long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void setRanged (boolean isRanged) {
+        this.isRanged = isRanged;
+    }
+
+    public void setLengthSent (boolean isLengthSent) {
+        this.isLengthSent = isLengthSent;
+    }
+
+    /**
+     * Method that makes range requests starting at or after a position fail
+     *
+     * @param position  the position
+     * @param code      the response code they get
+     */
+    public void failRangesFrom (long position, int code) {
+        failFrom = position;
+        failCode = code;
+    }
+
+    /**
+     * Method that makes every response stop (and its connection close) at a position of the
+     * media, whatever length it announced
+     *
+     * @param position the position
+     */
+    public void cutAt (long position) {
+        cutAt = position;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Counts
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public synchronized int getRequestCount () {
+        return ranges.size();
+    }
+
+    public synchronized List<String> getRanges () {
+        return new ArrayList<>(ranges);
+    }
+
+    /**
+     * Method that returns where each request started
+     *
+     * @return the start of every request's range (0 if it had none), in the order they came in
+     */
+    public synchronized List<Long> getRangeStarts () {
+        List<Long> starts = new ArrayList<>();
+        for (String range : ranges) {
+            starts.add(range.isEmpty() ? 0 : Long.parseLong(range.substring(0, range.indexOf('-'))));
+        }
+        return starts;
+    }
+
+    public synchronized long getBytesSent () {
+        return bytesSent;
+    }
+
+    public synchronized int getConnections () {
+        return connections;
+    }
+
+    public synchronized int getMaxConnections () {
+        return maxConnections;
+    }
+
+    public synchronized void resetCounts () {
+        ranges.clear();
+        bytesSent = 0;
+        maxConnections = connections;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Serving
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that starts accepting connections, each served on its own thread
+     *
+     * @throws IOException if the server socket can't be opened
+     */
+    public void start () throws IOException {
+
+        serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        thread.setDaemon(true);
+                        thread.start();
+                    } catch (IOException e) {
+                        // the server socket got closed
+                    }
+                }
+            }
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Method that stops accepting connections
+     */
+    public void stop () {
+        try {
+            serverSocket.close();
+            acceptThread.join();
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method that answers a single request
+     *
+     * @param socket the client connection
+     */
+    private void serve (Socket socket) {
+
+        synchronized (this) {
+            connections++;
+            maxConnections = Math.max(maxConnections, connections);
+        }
+
+        try {
+            InputStream in = socket.getInputStream();
+            String line = readLine(in);
+            if (line == null) return;
+
+            String path = line.split(" ")[1];
+            long start = -1;
+            long end = -1;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                Matcher matcher = RANGE_PATTERN.matcher(line.substring(line.indexOf(':') + 1).trim());
+                if (line.toLowerCase().startsWith("range:") && matcher.matches()) {
+                    start = Long.parseLong(matcher.group(1));
+                    end = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+                }
+            }
+
+            synchronized (this) {
+                ranges.add(start < 0 ? "" : start + "-" + (end < 0 ? "" : String.valueOf(end)));
+            }
+
+            OutputStream out = socket.getOutputStream();
+            byte[] bytes = media.get(path);
+            if (bytes == null) {
+                writeHeaders(out, "404 Not Found", "Content-Length: 0\r\n");
+            } else if (start >= 0 && failCode > 0 && start >= failFrom) {
+                writeHeaders(out, failCode + " Error", "Content-Length: 0\r\n");
+            } else if (start < 0 || !isRanged) {
+                writeHeaders(out, "200 OK", isLengthSent ? "Content-Length: " + bytes.length + "\r\n" : "");
+                writeBody(out, bytes, 0, bytes.length);
+            } else {
+                long last = end < 0 ? bytes.length - 1 : Math.min(end, bytes.length - 1);
+                writeHeaders(out, "206 Partial Content", "Content-Length: " + (last - start + 1) + "\r\n" +
+                        "Content-Range: bytes " + start + "-" + last + "/" + bytes.length + "\r\n");
+                writeBody(out, bytes, start, last + 1);
+            }
+            out.flush();
+        } catch (SocketException e) {
+            // the client closed the connection early, which it does once it has enough
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                connections--;
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Method that writes the status line & headers of a response
+     *
+     * @param out           the client output
+     * @param status        the status code & message
+     * @param headers       the headers, besides the content type & connection ones
+     * @throws IOException  if the client is gone
+     */
+    private static void writeHeaders (OutputStream out, String status, String headers) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Type: video/mp4\r\n" + headers +
+                "Connection: close\r\n\r\n").getBytes("ISO-8859-1"));
+    }
+
+    /**
+     * Method that writes part of a media, slice by slice, as fast as the server's throttled
+     * to, and only up to where responses get cut short
+     *
+     * @param out                   the client output
+     * @param bytes                 the media
+     * @param start                 the first byte to write
+     * @param end                   the (exclusive) last byte to write
+     * @throws IOException          if the client is gone
+     * @throws InterruptedException if the thread gets interrupted while throttled
+     */
+    private void writeBody (OutputStream out, byte[] bytes, long start, long end) throws IOException, InterruptedException {
+
+        long stop = cutAt >= 0 ? Math.max(start, Math.min(end, cutAt)) : end;
+        long begin = System.nanoTime();
+
+        for (long position = start; position < stop; ) {
+
+            int slice = (int) Math.min(SLICE_SIZE, stop - position);
+            out.write(bytes, (int) position, slice);
+            position += slice;
+
+            synchronized (this) {
+                bytesSent += slice;
+            }
+
+            long speed = bytesPerSecond;
+            if (speed > 0) {
+                long due = begin + (position - start) * 1000000000L / speed;
+                long wait = due - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+        }
+    }
+
+    /**
+     * Method that reads a line of a request
+     *
+     * @param in            the client input
+     * @return              the line, without its line break, or null at the end of the input
+     * @throws IOException  if the client is gone
+     */
+    private static String readLine (InputStream in) throws IOException {
+
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') line.append((char) c);
+        }
+        return c == -1 && line.length() == 0 ? null : line.toString();
+    }
+}
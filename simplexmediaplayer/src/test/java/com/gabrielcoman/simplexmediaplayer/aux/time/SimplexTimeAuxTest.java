@@ -0,0 +1,61 @@
+/**
+ * @Copyright:   Gabriel Coman 2017
+ * @Author:      Gabriel Coman (gabriel.coman@superawesome.tv)
+ */
+package com.gabrielcoman.simplexmediaplayer.aux.time;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM test for the time formatting of the player's time labels. That the formatting (and
+ * the rest of the tick) allocates nothing is checked on a device, by the instrumented
+ * SimplexControllerAllocationTest.
+ */
+public class SimplexTimeAuxTest {
+
+    @Test
+    public void testFormatTime () {
+        assertEquals("00:00", format(0));
+        assertEquals("00:59", format(59999));
+        assertEquals("01:00", format(60000));
+        assertEquals("59:59", format(3599999));
+        assertEquals("01:00:00", format(3600000));
+        assertEquals("10:05:07", format(36307000));
+        assertEquals("123:00:00", format(123 * 3600000L));
+    }
+
+    @Test
+    public void testFormatTimeLocaleDigits () {
+        // e.g. arabic-indic digits
+        char zeroDigit = '\u0660';
+        char[] chars = new char[SimplexTimeAux.MAX_TIME_CHARS];
+        int count = SimplexTimeAux.formatTime(61000, zeroDigit, chars);
+        assertEquals("\u0660\u0661:\u0660\u0661", new String(chars, 0, count));
+    }
+
+    @Test
+    public void testFormatTimeLongest () {
+        char[] chars = new char[SimplexTimeAux.MAX_TIME_CHARS];
+        int count = SimplexTimeAux.formatTime(99999 * 3600000L + 3599999, '0', chars);
+        assertEquals(SimplexTimeAux.MAX_TIME_CHARS, count);
+        assertEquals("99999:59:59", new String(chars, 0, count));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Aux
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Method that formats a time with western digits
+     *
+     * @param millis    time interval
+     * @return          the formatted time
+     */
+    private static String format (long millis) {
+        char[] chars = new char[SimplexTimeAux.MAX_TIME_CHARS];
+        int count = SimplexTimeAux.formatTime(millis, '0', chars);
+        return new String(chars, 0, count);
+    }
+}